@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.powermock.core.classloader.MockClassLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes for a new mock class loader to load and
+ * transform a set of classes, with and without the byte-code cache shared by
+ * the mock class loaders in a JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoadingBenchmark {
+
+    private static final String[] CLASSES_TO_LOAD = new String[]{
+            "org.powermock.reflect.internal.WhiteboxImpl",
+            "org.powermock.api.mockito.PowerMockito",
+            "org.powermock.api.easymock.PowerMock",
+            "org.mockito.Mockito",
+            "org.easymock.EasyMock",
+            "powermock.benchmarks.support.Calculator"};
+
+    @Param({"true", "false"})
+    public boolean bytecodeCache;
+
+    @Benchmark
+    public Class<?> loadAndTransformClasses() throws Exception {
+        final MockClassLoader mockClassLoader = PreparedClasses.newMockClassLoader(MockClassLoader.MODIFY_ALL_CLASSES);
+        if (!bytecodeCache) {
+            mockClassLoader.setBytecodeCache(null);
+        }
+        Class<?> loadedClass = null;
+        for (String className : CLASSES_TO_LOAD) {
+            loadedClass = mockClassLoader.loadClass(className);
+        }
+        return loadedClass;
+    }
+}
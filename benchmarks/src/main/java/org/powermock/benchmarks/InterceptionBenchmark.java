@@ -0,0 +1,158 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.powermock.core.MockRepository;
+import powermock.benchmarks.support.Calculation;
+import powermock.benchmarks.support.Calculator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of calling a prepared class when nothing is mocked,
+ * compared to calling the same class when it isn't prepared. This is the
+ * overhead that all code in prepared classes pays. The
+ * <code>...OtherMethodStubbed</code> benchmarks call methods of a prepared
+ * class that has another method stubbed, i.e. the call goes through the
+ * gateway and proceeds. Run with <code>-prof gc</code> to see what that path
+ * allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptionBenchmark {
+
+    private Calculation unprepared;
+
+    private Calculation prepared;
+
+    // Non-final so that the JIT can't fold the calls into constants
+    private int a = 1;
+
+    private int b = 2;
+
+    private Object first = "first";
+
+    private Object second = "second";
+
+    @Setup
+    public void setUp() throws Exception {
+        unprepared = new Calculator();
+        prepared = PreparedClasses.newInstance(PreparedClasses.newMockClassLoader(Calculator.class.getName()),
+                Calculator.class.getName(), Calculation.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MockRepository.clear();
+    }
+
+    /**
+     * A prepared class with a stubbed <code>add</code> method so that calls
+     * to its other methods can't skip the gateway.
+     */
+    @State(Scope.Benchmark)
+    public static class OtherMethodStubbed {
+
+        private Calculation prepared;
+
+        @Setup
+        public void setUp() throws Exception {
+            prepared = PreparedClasses.newInstance(PreparedClasses.newMockClassLoader(Calculator.class.getName()),
+                    Calculator.class.getName(), Calculation.class);
+            MockRepository.putMethodToStub(prepared.getClass().getMethod("add", int.class, int.class), 0);
+        }
+
+        @TearDown
+        public void tearDown() {
+            MockRepository.clear();
+        }
+    }
+
+    @Benchmark
+    public int unpreparedInstanceCall() {
+        return unprepared.add(a, b);
+    }
+
+    @Benchmark
+    public int instanceCallNothingMocked() {
+        return prepared.add(a, b);
+    }
+
+    @Benchmark
+    public int staticCallNothingMocked() {
+        return prepared.twice(a);
+    }
+
+    @Benchmark
+    public int unpreparedFieldRead() {
+        return unprepared.readField();
+    }
+
+    @Benchmark
+    public int fieldCall() {
+        return prepared.readField();
+    }
+
+    @Benchmark
+    public Object unpreparedReferenceArgumentsCall() {
+        return unprepared.first(first, second);
+    }
+
+    @Benchmark
+    public Object referenceArgumentsCallNothingMocked() {
+        return prepared.first(first, second);
+    }
+
+    @Benchmark
+    public int noArgumentsCallOtherMethodStubbed(OtherMethodStubbed state) {
+        return state.prepared.readField();
+    }
+
+    @Benchmark
+    public int intArgumentCallOtherMethodStubbed(OtherMethodStubbed state) {
+        return state.prepared.twice(a);
+    }
+
+    @Benchmark
+    public Object referenceArgumentsCallOtherMethodStubbed(OtherMethodStubbed state) {
+        return state.prepared.first(first, second);
+    }
+
+    @Benchmark
+    public Object unpreparedNewInstance() {
+        return unprepared.newValue(a);
+    }
+
+    @Benchmark
+    public Object newInstanceCall() {
+        return prepared.newValue(a);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.benchmarks;
+
+import org.powermock.core.classloader.MockClassLoader;
+import org.powermock.core.transformers.MockTransformer;
+import org.powermock.core.transformers.impl.MainMockTransformer;
+import powermock.benchmarks.support.Calculation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates mock class loaders set up the same way as the test runners do. The
+ * classes to prepare are in <code>powermock.benchmarks.support</code> since
+ * classes in <code>org.powermock</code> are never modified by a mock class
+ * loader.
+ */
+public class PreparedClasses {
+
+    private static final String[] PACKAGES_TO_DEFER = new String[]{Calculation.class.getName()};
+
+    public static MockClassLoader newMockClassLoader(String... classesToPrepare) {
+        final MockClassLoader mockClassLoader = new MockClassLoader(classesToPrepare, PACKAGES_TO_DEFER);
+        List<MockTransformer> mockTransformerChain = new ArrayList<MockTransformer>();
+        mockTransformerChain.add(new MainMockTransformer());
+        mockClassLoader.setMockTransformerChain(mockTransformerChain);
+        return mockClassLoader;
+    }
+
+    /**
+     * Create an instance of the class with the supplied name loaded by
+     * <code>classLoader</code> and return it as a <code>type</code>, which
+     * must be loaded by a parent of <code>classLoader</code>.
+     */
+    public static <T> T newInstance(ClassLoader classLoader, String className, Class<T> type) throws Exception {
+        return type.cast(Class.forName(className, true, classLoader).newInstance());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.powermock.core.MockRepository;
+import org.powermock.core.classloader.MockClassLoader;
+import powermock.benchmarks.support.Calculation;
+import powermock.benchmarks.support.Calculator;
+import powermock.benchmarks.support.EasyMockStaticMocking;
+import powermock.benchmarks.support.PowerMockitoStaticMocking;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls to a static method mocked using PowerMockito or the PowerMock
+ * API for EasyMock. The mocks are set up by code loaded by the mock class
+ * loader, just like in a test run by one of the PowerMock runners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticMockingBenchmark {
+
+    @Param({"PowerMockito", "PowerMock"})
+    public String api;
+
+    private Calculation prepared;
+
+    private int a = 1;
+
+    @Setup
+    public void setUp() throws Exception {
+        final MockClassLoader mockClassLoader = PreparedClasses.newMockClassLoader(Calculator.class.getName());
+        final String mocking = "PowerMockito".equals(api) ? PowerMockitoStaticMocking.class.getName() : EasyMockStaticMocking.class.getName();
+        PreparedClasses.newInstance(mockClassLoader, mocking, Runnable.class).run();
+        prepared = PreparedClasses.newInstance(mockClassLoader, Calculator.class.getName(), Calculation.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MockRepository.clear();
+    }
+
+    @Benchmark
+    public int mockedStaticCall() {
+        return prepared.twice(a);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package powermock.benchmarks.support;
+
+/**
+ * Implemented by the classes that are prepared by the benchmarks. This
+ * interface is deferred to the system class loader so that a benchmark can
+ * call a class loaded by a mock class loader without using reflection.
+ */
+public interface Calculation {
+
+    int add(int a, int b);
+
+    /**
+     * Delegates to the static method {@link Calculator#doubleIt(int)}.
+     */
+    int twice(int a);
+
+    int readField();
+
+    Object newValue(int a);
+
+    Object first(Object a, Object b);
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package powermock.benchmarks.support;
+
+public class Calculator implements Calculation {
+
+    private int offset = 1;
+
+    public int add(int a, int b) {
+        return a + b;
+    }
+
+    public int twice(int a) {
+        return doubleIt(a);
+    }
+
+    public static int doubleIt(int a) {
+        return 2 * a;
+    }
+
+    public int readField() {
+        return offset;
+    }
+
+    public Object newValue(int a) {
+        return new Value(a);
+    }
+
+    public Object first(Object a, Object b) {
+        return a;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package powermock.benchmarks.support;
+
+import org.easymock.EasyMock;
+import org.powermock.api.easymock.PowerMock;
+
+/**
+ * Mocks {@link Calculator#doubleIt(int)} using the PowerMock API for
+ * EasyMock. Must be loaded by the mock class loader that prepared the
+ * {@link Calculator}.
+ */
+public class EasyMockStaticMocking implements Runnable {
+
+    public void run() {
+        PowerMock.mockStatic(Calculator.class);
+        EasyMock.expect(Calculator.doubleIt(EasyMock.anyInt())).andStubReturn(42);
+        PowerMock.replay(Calculator.class);
+    }
+}
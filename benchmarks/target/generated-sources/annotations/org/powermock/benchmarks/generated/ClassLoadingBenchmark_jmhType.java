@@ -0,0 +1,4 @@
+package org.powermock.benchmarks.generated;
+public class ClassLoadingBenchmark_jmhType extends ClassLoadingBenchmark_jmhType_B3 {
+}
+
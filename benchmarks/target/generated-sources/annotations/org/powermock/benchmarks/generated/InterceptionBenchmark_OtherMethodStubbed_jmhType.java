@@ -0,0 +1,4 @@
+package org.powermock.benchmarks.generated;
+public class InterceptionBenchmark_OtherMethodStubbed_jmhType extends InterceptionBenchmark_OtherMethodStubbed_jmhType_B3 {
+}
+
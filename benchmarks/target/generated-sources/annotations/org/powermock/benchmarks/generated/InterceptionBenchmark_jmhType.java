@@ -0,0 +1,4 @@
+package org.powermock.benchmarks.generated;
+public class InterceptionBenchmark_jmhType extends InterceptionBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.powermock.benchmarks.generated;
+public class StaticMockingBenchmark_jmhType extends StaticMockingBenchmark_jmhType_B3 {
+}
+
@@ -19,11 +19,15 @@ import org.powermock.api.support.ClassLoaderUtil;
 import org.powermock.api.support.SafeExceptionRethrower;
 import org.powermock.classloading.spi.DeepClonerSPI;
 import org.powermock.classloading.spi.DoNotClone;
+import org.powermock.classloading.spi.ReferenceMappingDeepClonerSPI;
 import org.powermock.reflect.Whitebox;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A ClassLoaderExecutor can run any code in any classloader. E.g. assume you have a classloader
@@ -57,25 +61,68 @@ import java.util.concurrent.Callable;
  * <p>
  * Note that the ClassloaderExecutor requires a deep cloner implementing the {@link DeepClonerSPI} present in the class-path.
  * </p>
+ * <p>
+ * An instance that is cloned for every execution, such as a test instance, can be kept in the classloader by passing it
+ * as <code>keptInstance</code> to {@link #execute(Runnable, Object)} or {@link #execute(Callable, Object)}. It's then
+ * only cloned the first time and the same clone is used in place of any instance of the same class in later
+ * executions. This requires a deep cloner implementing {@link ReferenceMappingDeepClonerSPI}, other deep cloners clone
+ * the instance every time.
+ * </p>
  */
 public class ClassloaderExecutor {
 
+	private static final String DEEP_CLONER_CLASS_NAME = "org.powermock.classloading.DeepCloner";
+
+	/*
+	 * The constructor of the deep cloner found in the class-path, resolved on
+	 * first use.
+	 */
+	private static volatile Constructor<DeepClonerSPI> deepClonerConstructor;
+
 	@DoNotClone
 	private final ClassLoader classloader;
 
+	/*
+	 * The method to invoke per class of the cloned callables and runnables.
+	 */
+	@DoNotClone
+	private final ConcurrentMap<Class<?>, Method> methods = new ConcurrentHashMap<Class<?>, Method>();
+
+	/*
+	 * The clones of the kept instances per class of the instance.
+	 */
+	@DoNotClone
+	private final ConcurrentMap<Class<?>, Object> keptClones = new ConcurrentHashMap<Class<?>, Object>();
+
 	public ClassloaderExecutor(ClassLoader classloader) {
 		this.classloader = classloader;
 	}
 
-	@SuppressWarnings("unchecked")
 	public <T> T execute(Callable<T> callable) {
+		return execute(callable, null);
+	}
+
+	/**
+	 * Execute <code>callable</code> and keep the clone of
+	 * <code>keptInstance</code> for later executions.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(Callable<T> callable, Object keptInstance) {
 		assertArgumentNotNull(callable, "callable");
-		return (T) execute(callable, Whitebox.getMethod(callable.getClass(), "call"));
+		return (T) execute(callable, "call", keptInstance);
 	}
 
 	public void execute(Runnable runnable) {
+		execute(runnable, null);
+	}
+
+	/**
+	 * Execute <code>runnable</code> and keep the clone of
+	 * <code>keptInstance</code> for later executions.
+	 */
+	public void execute(Runnable runnable, Object keptInstance) {
 		assertArgumentNotNull(runnable, "runnable");
-		execute(runnable, Whitebox.getMethod(runnable.getClass(), "run"));
+		execute(runnable, "run", keptInstance);
 	}
 
 	private void assertArgumentNotNull(Object object, String argumentName) {
@@ -84,31 +131,58 @@ public class ClassloaderExecutor {
 		}
 	}
 
-	private Object execute(Object instance, Method method, Object... arguments) {
-        final DeepClonerSPI deepCloner = createDeepCloner(classloader);
-		final Object objectLoadedWithClassloader = deepCloner.clone(instance);
-		final Object[] argumentsLoadedByClassLoader = new Object[arguments.length];
-		for (int i = 0; i < arguments.length; i++) {
-			final Object argument = arguments[i];
-			argumentsLoadedByClassLoader[i] = deepCloner.clone(argument);
+	private Object execute(Object instance, String methodName, Object keptInstance) {
+		final DeepClonerSPI deepCloner = createDeepCloner(classloader);
+		if (keptInstance != null && deepCloner instanceof ReferenceMappingDeepClonerSPI) {
+			keepClone((ReferenceMappingDeepClonerSPI) deepCloner, keptInstance);
 		}
+		final Object objectLoadedWithClassloader = deepCloner.clone(instance);
 
 		Object result = null;
 		try {
-			result = Whitebox.invokeMethod(objectLoadedWithClassloader, method.getName(), argumentsLoadedByClassLoader);
+			result = getMethod(objectLoadedWithClassloader.getClass(), methodName).invoke(objectLoadedWithClassloader);
+		} catch (InvocationTargetException e) {
+			SafeExceptionRethrower.safeRethrow(e.getCause());
 		} catch (Exception e) {
 			SafeExceptionRethrower.safeRethrow(e);
 		}
 		return result == null ? null : createDeepCloner(getClass().getClassLoader()).clone(result);
 	}
 
-    private DeepClonerSPI createDeepCloner(ClassLoader classLoader) {
-        final Class<DeepClonerSPI> deepClonerClass = ClassLoaderUtil.loadClass("org.powermock.classloading.DeepCloner");
-        final Constructor<DeepClonerSPI> constructor = Whitebox.getConstructor(deepClonerClass, ClassLoader.class);
-        try {
-            return constructor.newInstance(classLoader);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to instantiate DeepCloner. The DeepCloner implementation must have a one-arg constructor taking a Classloader as parameter.", e);
-        }
-    }
+	private void keepClone(ReferenceMappingDeepClonerSPI deepCloner, Object keptInstance) {
+		final Class<?> type = keptInstance.getClass();
+		Object keptClone = keptClones.get(type);
+		if (keptClone == null) {
+			keptClone = deepCloner.clone(keptInstance);
+			final Object existing = keptClones.putIfAbsent(type, keptClone);
+			if (existing != null) {
+				keptClone = existing;
+			}
+		}
+		deepCloner.putReference(keptInstance, keptClone);
+	}
+
+	private Method getMethod(Class<?> type, String methodName) {
+		Method method = methods.get(type);
+		if (method == null) {
+			method = Whitebox.getMethod(type, methodName);
+			method.setAccessible(true);
+			methods.put(type, method);
+		}
+		return method;
+	}
+
+	private DeepClonerSPI createDeepCloner(ClassLoader classLoader) {
+		Constructor<DeepClonerSPI> constructor = deepClonerConstructor;
+		if (constructor == null) {
+			final Class<DeepClonerSPI> deepClonerClass = ClassLoaderUtil.loadClass(DEEP_CLONER_CLASS_NAME);
+			constructor = Whitebox.getConstructor(deepClonerClass, ClassLoader.class);
+			deepClonerConstructor = constructor;
+		}
+		try {
+			return constructor.newInstance(classLoader);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to instantiate DeepCloner. The DeepCloner implementation must have a one-arg constructor taking a Classloader as parameter.", e);
+		}
+	}
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.classloading.spi;
+
+/**
+ * A deep-cloner that can be told to use an existing clone of an object. This
+ * is optional, deep-cloners that don't implement this interface always clone
+ * all objects.
+ */
+public interface ReferenceMappingDeepClonerSPI extends DeepClonerSPI {
+
+    /**
+     * Use <code>clone</code> wherever <code>original</code> is referred to by
+     * the objects cloned from now on instead of cloning it.
+     */
+    void putReference(Object original, Object clone);
+}
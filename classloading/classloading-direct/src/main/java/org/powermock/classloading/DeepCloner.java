@@ -0,0 +1,465 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.classloading;
+
+import org.powermock.api.support.ClassLoaderUtil;
+import org.powermock.api.support.SafeExceptionRethrower;
+import org.powermock.classloading.spi.DoNotClone;
+import org.powermock.classloading.spi.ReferenceMappingDeepClonerSPI;
+import org.powermock.reflect.Whitebox;
+import org.powermock.reflect.internal.ClassCache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.WeakHashMap;
+
+/**
+ * The purpose of the deep cloner is to create a deep clone of an object. An
+ * object can also be cloned to a different class-loader.
+ * <p>
+ * The object graph is copied object by object directly to the target
+ * class-loader, nothing is serialized. Each object is cloned once even if
+ * it's referred to several times in the graph. Collections and maps of the
+ * standard Java types are rebuilt by adding the cloned elements which means
+ * that hash based collections are rehashed using the cloned keys. Static
+ * fields are not cloned and fields annotated with {@link DoNotClone} are
+ * left with their default value.
+ * <p>
+ * How instances of a class are cloned to a class-loader is decided once and
+ * shared by all deep cloners.
+ */
+public class DeepCloner implements ReferenceMappingDeepClonerSPI {
+
+	/*
+	 * Standard Java types that are immutable and thus can be referenced by the
+	 * clone.
+	 */
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>> asList(String.class,
+			Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class,
+			Double.class, BigInteger.class, BigDecimal.class));
+
+	/*
+	 * The clone plans per target class-loader. The class-loaders are weakly
+	 * referenced and the plans are softly referenced (by the class cache) so
+	 * that the cache doesn't prevent a class-loader from being garbage
+	 * collected.
+	 */
+	private static final Map<ClassLoader, ClassCache<ClonePlan>> clonePlans = new WeakHashMap<ClassLoader, ClassCache<ClonePlan>>();
+
+	private final ClassLoader targetCL;
+	private final Map<Object, Object> referenceMap = new IdentityHashMap<Object, Object>();
+	private final Class<DoNotClone> doNotClone;
+	private final ClassCache<ClonePlan> plans;
+
+	/**
+	 * Clone using the supplied ClassLoader.
+	 */
+	public DeepCloner(ClassLoader classLoader) {
+		this.targetCL = classLoader;
+		doNotClone = ClassLoaderUtil.loadClass(DoNotClone.class, targetCL);
+		plans = getClonePlans(targetCL);
+	}
+
+	/**
+	 * Clone using the current ContextClassLoader.
+	 */
+	public DeepCloner() {
+		this(Thread.currentThread().getContextClassLoader());
+	}
+
+	private static ClassCache<ClonePlan> getClonePlans(ClassLoader targetCL) {
+		synchronized (clonePlans) {
+			ClassCache<ClonePlan> plans = clonePlans.get(targetCL);
+			if (plans == null) {
+				plans = new ClassCache<ClonePlan>();
+				clonePlans.put(targetCL, plans);
+			}
+			return plans;
+		}
+	}
+
+	/**
+	 * Clones an object.
+	 * 
+	 * @return A deep clone of the object to clone.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T clone(T objectToClone) {
+		if (objectToClone == null) {
+			throw new IllegalArgumentException("Object to clone cannot be null");
+		}
+		return (T) cloneReference(objectToClone);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void putReference(Object original, Object clone) {
+		referenceMap.put(original, clone);
+	}
+
+	private Object cloneReference(Object source) {
+		if (source == null) {
+			return null;
+		}
+		final Object clone = referenceMap.get(source);
+		if (clone != null) {
+			return clone;
+		}
+		return performClone(source);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object performClone(Object source) {
+		if (source instanceof Class<?>) {
+			return cloneClass((Class<?>) source);
+		}
+		final ClonePlan plan = getClonePlan(source.getClass());
+		switch (plan.strategy) {
+		case REFERENCE:
+			return source;
+		case PRIMITIVE_ARRAY:
+			final int length = Array.getLength(source);
+			final Object primitiveArray = Array.newInstance(plan.targetClass.getComponentType(), length);
+			System.arraycopy(source, 0, primitiveArray, 0, length);
+			referenceMap.put(source, primitiveArray);
+			return primitiveArray;
+		case ARRAY:
+			return cloneArray(plan, (Object[]) source);
+		case REFLECT_METHOD:
+			return cloneJavaReflectMethod((Method) source);
+		case ENUM:
+			return getEnumValue((Enum<?>) source, plan.targetClass);
+		case COLLECTION:
+			return cloneCollection(plan, (Collection<Object>) source);
+		case MAP:
+			return cloneMap(plan, (Map<Object, Object>) source);
+		default:
+			final Object target = Whitebox.newInstance(plan.targetClass);
+			referenceMap.put(source, target);
+			cloneFields(plan, source, target);
+			return target;
+		}
+	}
+
+	private ClonePlan getClonePlan(Class<?> sourceClass) {
+		ClonePlan plan = plans.get(sourceClass);
+		if (plan == null) {
+			plan = createClonePlan(sourceClass);
+			plans.put(sourceClass, plan);
+		}
+		return plan;
+	}
+
+	private ClonePlan createClonePlan(Class<?> sourceClass) {
+		final Class<?> targetClass = ClassLoaderUtil.loadClass(sourceClass, targetCL);
+		if (targetClass.isArray()) {
+			final boolean isPrimitiveArray = targetClass.getComponentType().isPrimitive();
+			return new ClonePlan(isPrimitiveArray ? CloneStrategy.PRIMITIVE_ARRAY : CloneStrategy.ARRAY, targetClass);
+		} else if (targetClass.getName().equals(Method.class.getName())) {
+			return new ClonePlan(CloneStrategy.REFLECT_METHOD, targetClass);
+		} else if (isReferencedType(targetClass) || IMMUTABLE_TYPES.contains(targetClass)) {
+			return new ClonePlan(CloneStrategy.REFERENCE, targetClass);
+		} else if (Enum.class.isAssignableFrom(targetClass)) {
+			return new ClonePlan(CloneStrategy.ENUM, getEnumType(targetClass));
+		} else if (isStandardJavaType(targetClass) && isCollectionOrMap(targetClass)) {
+			final boolean isCollection = Collection.class.isAssignableFrom(targetClass);
+			final boolean isSorted = (isCollection ? SortedSet.class : SortedMap.class).isAssignableFrom(targetClass);
+			final Constructor<?> constructor = getConstructor(targetClass, isSorted);
+			if (constructor != null) {
+				return new ClonePlan(isCollection ? CloneStrategy.COLLECTION : CloneStrategy.MAP, targetClass, constructor);
+			}
+		}
+		return new ClonePlan(targetClass, createFieldPlans(sourceClass, targetClass));
+	}
+
+	private static boolean isCollectionOrMap(Class<?> cls) {
+		return Collection.class.isAssignableFrom(cls) || Map.class.isAssignableFrom(cls);
+	}
+
+	/*
+	 * The public constructor used to rebuild a collection or map. Sorted
+	 * collections and maps are created with the comparator of the original.
+	 */
+	private static Constructor<?> getConstructor(Class<?> type, boolean isSorted) {
+		try {
+			return isSorted ? type.getConstructor(Comparator.class) : type.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private FieldPlan[] createFieldPlans(Class<?> sourceClass, Class<?> targetClass) {
+		final List<FieldPlan> fieldPlans = new ArrayList<FieldPlan>();
+		Class<?> currentTargetClass = targetClass;
+		while (currentTargetClass != null) {
+			for (Field field : currentTargetClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.getAnnotation(doNotClone) != null) {
+					continue;
+				}
+				fieldPlans.add(new FieldPlan(getSourceField(sourceClass, field), field));
+			}
+			currentTargetClass = currentTargetClass.getSuperclass();
+		}
+		return fieldPlans.toArray(new FieldPlan[fieldPlans.size()]);
+	}
+
+	/*
+	 * Finds the field in the source class hierarchy that corresponds to a
+	 * field in the target class hierarchy, i.e. the field with the same name
+	 * declared by the class with the same name.
+	 */
+	private static Field getSourceField(Class<?> sourceClass, Field targetField) {
+		final String declaringClassName = targetField.getDeclaringClass().getName();
+		Class<?> currentSourceClass = sourceClass;
+		while (currentSourceClass != null) {
+			if (currentSourceClass.getName().equals(declaringClassName)) {
+				try {
+					return currentSourceClass.getDeclaredField(targetField.getName());
+				} catch (NoSuchFieldException e) {
+					break;
+				}
+			}
+			currentSourceClass = currentSourceClass.getSuperclass();
+		}
+		return Whitebox.getField(sourceClass, targetField.getName());
+	}
+
+	private void cloneFields(ClonePlan plan, Object source, Object target) {
+		try {
+			for (FieldPlan field : plan.fields) {
+				if (field.isPrimitive) {
+					field.copyPrimitive(source, target);
+				} else {
+					field.targetField.set(target, cloneReference(field.sourceField.get(source)));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private Object cloneArray(ClonePlan plan, Object[] source) {
+		final Object[] target = (Object[]) Array.newInstance(plan.targetClass.getComponentType(), source.length);
+		referenceMap.put(source, target);
+		for (int i = 0; i < source.length; i++) {
+			target[i] = cloneReference(source[i]);
+		}
+		return target;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object cloneCollection(ClonePlan plan, Collection<Object> source) {
+		final Object comparator = source instanceof SortedSet<?> ? ((SortedSet<Object>) source).comparator() : null;
+		final Collection<Object> target = (Collection<Object>) plan.newInstance(source, cloneReference(comparator));
+		referenceMap.put(source, target);
+		for (Object element : source) {
+			target.add(cloneReference(element));
+		}
+		return target;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object cloneMap(ClonePlan plan, Map<Object, Object> source) {
+		final Object comparator = source instanceof SortedMap<?, ?> ? ((SortedMap<Object, Object>) source).comparator() : null;
+		final Map<Object, Object> target = (Map<Object, Object>) plan.newInstance(source, cloneReference(comparator));
+		referenceMap.put(source, target);
+		for (Map.Entry<Object, Object> entry : source.entrySet()) {
+			target.put(cloneReference(entry.getKey()), cloneReference(entry.getValue()));
+		}
+		return target;
+	}
+
+	private Object cloneClass(Class<?> source) {
+		if (source.isPrimitive() || isReferencedType(source)) {
+			return source;
+		}
+		return ClassLoaderUtil.loadClass(source, targetCL);
+	}
+
+	private Object cloneJavaReflectMethod(Method sourceMethod) {
+		final Class<?> declaringClass = ClassLoaderUtil.loadClass(sourceMethod.getDeclaringClass(), targetCL);
+		Method targetMethod = null;
+		try {
+			targetMethod = declaringClass.getDeclaredMethod(sourceMethod.getName(), getParameterTypes(sourceMethod));
+		} catch (Exception e) {
+			SafeExceptionRethrower.safeRethrow(e);
+		}
+		if (sourceMethod.isAccessible()) {
+			targetMethod.setAccessible(true);
+		}
+		return targetMethod;
+	}
+
+	private Class<?>[] getParameterTypes(Method sourceMethod) {
+		final Class<?>[] parameterTypes = sourceMethod.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			parameterTypes[i] = (Class<?>) cloneClass(parameterTypes[i]);
+		}
+		return parameterTypes;
+	}
+
+	/*
+	 * Instances of these types are the same in all class-loaders or can't be
+	 * cloned.
+	 */
+	private static boolean isReferencedType(Class<?> cls) {
+		final String name = cls.getName();
+		return name.startsWith("sun.") || name.startsWith("java.lang.reflect");
+	}
+
+	private static boolean isStandardJavaType(Class<?> cls) {
+		return cls.getName().startsWith("java.");
+	}
+
+	/*
+	 * The enum type of an enum constant with a body is an anonymous sub class
+	 * of the enum.
+	 */
+	private static Class<?> getEnumType(Class<?> cls) {
+		Class<?> enumType = cls;
+		while (!enumType.isEnum()) {
+			enumType = enumType.getSuperclass();
+		}
+		return enumType;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Enum getEnumValue(final Enum<?> enumValueOfSourceClassloader, final Class<?> enumTypeLoadedByTargetCL) {
+		return Enum.valueOf((Class) enumTypeLoadedByTargetCL, enumValueOfSourceClassloader.name());
+	}
+
+	private static enum CloneStrategy {
+		/**
+		 * The clone refers to the same instance.
+		 */
+		REFERENCE,
+		PRIMITIVE_ARRAY,
+		ARRAY,
+		REFLECT_METHOD,
+		/**
+		 * The enum constant with the same name in the target class-loader.
+		 */
+		ENUM,
+		/**
+		 * A new collection to which the cloned elements are added.
+		 */
+		COLLECTION,
+		/**
+		 * A new map to which the cloned entries are added.
+		 */
+		MAP,
+		/**
+		 * A new instance of the target class whose fields are cloned.
+		 */
+		FIELDS
+	}
+
+	/**
+	 * Describes how instances of a class are cloned to a class-loader.
+	 */
+	private static class ClonePlan {
+		final CloneStrategy strategy;
+		final Class<?> targetClass;
+		final Constructor<?> constructor;
+		final FieldPlan[] fields;
+
+		ClonePlan(CloneStrategy strategy, Class<?> targetClass) {
+			this(strategy, targetClass, null);
+		}
+
+		ClonePlan(CloneStrategy strategy, Class<?> targetClass, Constructor<?> constructor) {
+			this.strategy = strategy;
+			this.targetClass = targetClass;
+			this.constructor = constructor;
+			this.fields = null;
+		}
+
+		ClonePlan(Class<?> targetClass, FieldPlan[] fields) {
+			this.strategy = CloneStrategy.FIELDS;
+			this.targetClass = targetClass;
+			this.constructor = null;
+			this.fields = fields;
+		}
+
+		Object newInstance(Object source, Object comparator) {
+			try {
+				if (constructor.getParameterTypes().length == 0) {
+					return constructor.newInstance();
+				}
+				return constructor.newInstance(comparator);
+			} catch (Exception e) {
+				throw new RuntimeException("Failed to create a clone of " + source.getClass().getName() + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Copies the value of an instance field of the source object to the
+	 * corresponding field of the clone. Primitive values are copied without
+	 * boxing them.
+	 */
+	private static class FieldPlan {
+		final Field sourceField;
+		final Field targetField;
+		final boolean isPrimitive;
+
+		FieldPlan(Field sourceField, Field targetField) {
+			sourceField.setAccessible(true);
+			targetField.setAccessible(true);
+			this.sourceField = sourceField;
+			this.targetField = targetField;
+			isPrimitive = targetField.getType().isPrimitive() && targetField.getType().equals(sourceField.getType());
+		}
+
+		void copyPrimitive(Object source, Object target) throws IllegalAccessException {
+			final Class<?> type = targetField.getType();
+			if (type.equals(Integer.TYPE)) {
+				targetField.setInt(target, sourceField.getInt(source));
+			} else if (type.equals(Long.TYPE)) {
+				targetField.setLong(target, sourceField.getLong(source));
+			} else if (type.equals(Boolean.TYPE)) {
+				targetField.setBoolean(target, sourceField.getBoolean(source));
+			} else if (type.equals(Double.TYPE)) {
+				targetField.setDouble(target, sourceField.getDouble(source));
+			} else if (type.equals(Float.TYPE)) {
+				targetField.setFloat(target, sourceField.getFloat(source));
+			} else if (type.equals(Short.TYPE)) {
+				targetField.setShort(target, sourceField.getShort(source));
+			} else if (type.equals(Character.TYPE)) {
+				targetField.setChar(target, sourceField.getChar(source));
+			} else {
+				targetField.setByte(target, sourceField.getByte(source));
+			}
+		}
+	}
+}
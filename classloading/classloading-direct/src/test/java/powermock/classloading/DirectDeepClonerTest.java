@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package powermock.classloading;
+
+import org.junit.Test;
+import org.powermock.classloading.DeepCloner;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class DirectDeepClonerTest {
+
+    @Test
+    public void clonesJavaInstances() throws Exception {
+        final URL original = new URL("http://www.powermock.org");
+        URL clone = new DeepCloner().clone(original);
+        assertEquals(clone, original);
+        assertNotSame(clone, original);
+    }
+
+    @Test
+    public void clonesUnmodifiableLists() throws Exception {
+        final UnmodifiableListExample original = new UnmodifiableListExample();
+        UnmodifiableListExample clone = new DeepCloner().clone(original);
+        assertEquals(clone, original);
+        assertNotSame(clone, original);
+    }
+
+    @Test
+    public void clonesArraysWithNullValues() throws Exception {
+        Object[] original = new Object[] { "Test", null };
+        Object[] clone = new DeepCloner().clone(original);
+        assertArrayEquals(clone, original);
+        assertNotSame(clone, original);
+    }
+
+    @Test
+    public void usesReferencesPutBeforeCloning() throws Exception {
+        final NotSerializable kept = new NotSerializable();
+        final NotSerializable keptClone = new NotSerializable();
+        DeepCloner deepCloner = new DeepCloner();
+        deepCloner.putReference(kept, keptClone);
+        Object[] clone = deepCloner.clone(new Object[] { kept });
+        assertSame(keptClone, clone[0]);
+    }
+
+    @Test
+    public void clonesObjectsReferredToSeveralTimesOnce() throws Exception {
+        final NotSerializable shared = new NotSerializable();
+        Object[] clone = new DeepCloner().clone(new Object[] { shared, shared });
+        assertNotSame(shared, clone[0]);
+        assertSame(clone[0], clone[1]);
+    }
+
+    @Test
+    public void clonesPrimitiveArraysReferredToSeveralTimesOnce() throws Exception {
+        final int[] shared = new int[] { 1, 2 };
+        Object[] clone = new DeepCloner().clone(new Object[] { shared, shared });
+        assertNotSame(shared, clone[0]);
+        assertSame(clone[0], clone[1]);
+    }
+
+    @Test
+    public void rebuildsMapsUsingTheClonedKeys() throws Exception {
+        final IdentityKey key = new IdentityKey();
+        final Map<IdentityKey, String> original = new HashMap<IdentityKey, String>();
+        original.put(key, "value");
+        Object[] clone = new DeepCloner().clone(new Object[] { key, original });
+        @SuppressWarnings("unchecked")
+        Map<IdentityKey, String> clonedMap = (Map<IdentityKey, String>) clone[1];
+        assertEquals("value", clonedMap.get(clone[0]));
+    }
+
+    @Test
+    public void rebuildsSortedSetsUsingTheComparatorOfTheOriginal() throws Exception {
+        final TreeSet<String> original = new TreeSet<String>(Collections.reverseOrder());
+        original.addAll(Arrays.asList("a", "b", "c"));
+        TreeSet<String> clone = new DeepCloner().clone(original);
+        assertEquals(Arrays.asList("c", "b", "a"), Arrays.asList(clone.toArray()));
+        assertNotSame(clone, original);
+    }
+}
+
+class IdentityKey {
+}
+
+class UnmodifiableListExample {
+    private List<NotSerializable> cl = Collections.unmodifiableList(Arrays.asList(new NotSerializable()));
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((cl == null) ? 0 : cl.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        powermock.classloading.UnmodifiableListExample other = (powermock.classloading.UnmodifiableListExample) obj;
+        if (cl == null) {
+            if (other.cl != null)
+                return false;
+        } else if (!cl.equals(other.cl))
+            return false;
+        return true;
+    }
+}
+
+class NotSerializable {
+    private final String state = "Nothing";
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((state == null) ? 0 : state.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        powermock.classloading.NotSerializable other = (powermock.classloading.NotSerializable) obj;
+        if (state == null) {
+            if (other.state != null)
+                return false;
+        } else if (!state.equals(other.state))
+            return false;
+        return true;
+    }
+}
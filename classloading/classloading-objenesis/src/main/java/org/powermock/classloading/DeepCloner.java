@@ -17,10 +17,10 @@ package org.powermock.classloading;
 
 import org.powermock.api.support.ClassLoaderUtil;
 import org.powermock.api.support.SafeExceptionRethrower;
-import org.powermock.classloading.spi.DeepClonerSPI;
 import org.powermock.classloading.spi.DoNotClone;
-import org.powermock.core.ListMap;
+import org.powermock.classloading.spi.ReferenceMappingDeepClonerSPI;
 import org.powermock.reflect.Whitebox;
+import org.powermock.reflect.internal.ClassCache;
 import sun.misc.Unsafe;
 
 import java.io.*;
@@ -28,18 +28,47 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * The purpose of the deep cloner is to create a deep clone of an object. An
  * object can also be cloned to a different class-loader.
  * <p>
+ * How instances of a class are cloned to a class-loader is decided once and
+ * stored in a {@link ClonePlan} that is shared by all deep cloners, so
+ * cloning objects of the same classes again only copies the field values.
  */
-public class DeepCloner implements DeepClonerSPI {
+public class DeepCloner implements ReferenceMappingDeepClonerSPI {
+
+	/*
+	 * Standard Java types that are immutable and thus can be referenced by the
+	 * clone instead of being serialized.
+	 */
+	private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>> asList(String.class,
+			Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class,
+			Double.class, BigInteger.class, BigDecimal.class));
+
+	/*
+	 * The clone plans per target class-loader. The class-loaders are weakly
+	 * referenced and the plans are softly referenced (by the class cache) so
+	 * that the cache doesn't prevent a class-loader from being garbage
+	 * collected.
+	 */
+	private static final Map<ClassLoader, ClassCache<ClonePlan>> clonePlans = new WeakHashMap<ClassLoader, ClassCache<ClonePlan>>();
 
 	private final ClassLoader targetCL;
-	private final Map<Object, Object> referenceMap = new ListMap<Object, Object>();
+	private final Map<Object, Object> referenceMap = new IdentityHashMap<Object, Object>();
 	private final Class<DoNotClone> doNotClone;
+	private final ClassCache<ClonePlan> plans;
 
 	/**
 	 * Clone using the supplied ClassLoader.
@@ -47,6 +76,7 @@ public class DeepCloner implements DeepClonerSPI {
 	public DeepCloner(ClassLoader classLoader) {
 		this.targetCL = classLoader;
 		doNotClone = getDoNotClone(targetCL);
+		plans = getClonePlans(targetCL);
 	}
 
 	/**
@@ -60,6 +90,17 @@ public class DeepCloner implements DeepClonerSPI {
 		return ClassLoaderUtil.loadClass(DoNotClone.class, targetCL);
 	}
 
+	private static ClassCache<ClonePlan> getClonePlans(ClassLoader targetCL) {
+		synchronized (clonePlans) {
+			ClassCache<ClonePlan> plans = clonePlans.get(targetCL);
+			if (plans == null) {
+				plans = new ClassCache<ClonePlan>();
+				clonePlans.put(targetCL, plans);
+			}
+			return plans;
+		}
+	}
+
 	/**
 	 * Clones an object.
 	 * 
@@ -77,18 +118,17 @@ public class DeepCloner implements DeepClonerSPI {
 	 *            these objects (will be same instance).
 	 * @return A deep clone of the object to clone.
 	 */
+	@SuppressWarnings("unchecked")
 	public <T> T clone(T objectToClone, boolean includeStandardJavaType) {
 		assertObjectNotNull(objectToClone);
-		return performClone(ClassLoaderUtil.loadClass(getType(objectToClone), targetCL), objectToClone,
-				includeStandardJavaType);
+		return (T) performClone(objectToClone);
 	}
 
-	@SuppressWarnings("unchecked")
-	private static <T> Class<T> getType(T object) {
-		if (object == null) {
-			return null;
-		}
-		return (Class<T>) (object instanceof Class ? object : object.getClass());
+	/**
+	 * {@inheritDoc}
+	 */
+	public void putReference(Object original, Object clone) {
+		referenceMap.put(original, clone);
 	}
 
 	private static boolean isClass(Object object) {
@@ -104,30 +144,117 @@ public class DeepCloner implements DeepClonerSPI {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T> T performClone(Class<T> targetClass, Object source, boolean shouldCloneStandardJavaTypes) {
-		Object target = null;
-		if (targetClass.isArray() && !isClass(source)) {
-			return (T) instantiateArray(targetCL, targetClass, source, shouldCloneStandardJavaTypes);
+	private Object performClone(Object source) {
+		if (isClass(source)) {
+			return cloneClass((Class<?>) source);
+		}
+		final ClonePlan plan = getClonePlan(source.getClass());
+		switch (plan.strategy) {
+		case REFERENCE:
+			return source;
+		case ARRAY:
+			return instantiateArray(plan, source);
+		case REFLECT_METHOD:
+			return cloneJavaReflectMethod(source);
+		case SERIALIZATION:
+			return serializationClone(source);
+		case ENUM:
+			return getEnumValue(source, plan.targetClass);
+		default:
+			final Object target = Whitebox.newInstance(plan.targetClass);
+			referenceMap.put(source, target);
+			cloneFields(plan, source, target);
+			return target;
+		}
+	}
+
+	/*
+	 * Clones the value of a field or an array element that refers to an
+	 * object in the graph being cloned.
+	 */
+	private Object cloneReference(Object value, Object source, Object target) {
+		if (value == source) {
+			return target;
+		} else if (value == null) {
+			return null;
+		} else if (referenceMap.containsKey(value)) {
+			return referenceMap.get(value);
+		}
+		return performClone(value);
+	}
+
+	private ClonePlan getClonePlan(Class<?> sourceClass) {
+		ClonePlan plan = plans.get(sourceClass);
+		if (plan == null) {
+			plan = createClonePlan(sourceClass);
+			plans.put(sourceClass, plan);
+		}
+		return plan;
+	}
+
+	private ClonePlan createClonePlan(Class<?> sourceClass) {
+		final Class<?> targetClass = ClassLoaderUtil.loadClass(sourceClass, targetCL);
+		if (targetClass.isArray()) {
+			return new ClonePlan(CloneStrategy.ARRAY, targetClass);
 		} else if (isJavaReflectMethod(targetClass)) {
-			return (T) cloneJavaReflectMethod(source);
-		} else if (targetClass.isPrimitive() || isSunClass(targetClass) || isJavaReflectClass(targetClass)) {
-			return (T) source;
-		} else if (isSerializableCandidate(targetClass, source)) {
-			return (T) serializationClone(source);
-		} else if (targetClass.isEnum()) {
-			return (T) cloneEnum(targetCL, source);
-		} else if (isClass(source)) {
-			return (T) ClassLoaderUtil.loadClass(getType(source), targetCL);
-		} else {
-			target = isClass(source) ? source : Whitebox.newInstance(targetClass);
+			return new ClonePlan(CloneStrategy.REFLECT_METHOD, targetClass);
+		} else if (isSunClass(targetClass) || isJavaReflectClass(targetClass) || IMMUTABLE_TYPES.contains(targetClass)) {
+			return new ClonePlan(CloneStrategy.REFERENCE, targetClass);
+		} else if (isSerializableCandidate(targetClass, sourceClass)) {
+			return new ClonePlan(CloneStrategy.SERIALIZATION, targetClass);
+		} else if (Enum.class.isAssignableFrom(targetClass)) {
+			return new ClonePlan(CloneStrategy.ENUM, getEnumType(targetClass));
 		}
+		return new ClonePlan(targetClass, createFieldPlans(sourceClass, targetClass));
+	}
 
-		if (target != null) {
-			referenceMap.put(source, target);
-			cloneFields(targetCL, targetClass, source, target, referenceMap, shouldCloneStandardJavaTypes);
+	private FieldPlan[] createFieldPlans(Class<?> sourceClass, Class<?> targetClass) {
+		final List<FieldPlan> fieldPlans = new ArrayList<FieldPlan>();
+		Class<?> currentTargetClass = targetClass;
+		while (currentTargetClass != null) {
+			for (Field field : currentTargetClass.getDeclaredFields()) {
+				if (field.getAnnotation(doNotClone) != null) {
+					continue;
+				}
+				final Field sourceField = getSourceField(sourceClass, field);
+				if (Modifier.isStatic(field.getModifiers()) && sourceField.equals(field)) {
+					// The same class in both class-loaders, nothing to copy
+					continue;
+				}
+				fieldPlans.add(new FieldPlan(sourceField, field));
+			}
+			currentTargetClass = currentTargetClass.getSuperclass();
 		}
-		return (T) target;
+		return fieldPlans.toArray(new FieldPlan[fieldPlans.size()]);
+	}
+
+	/*
+	 * Finds the field in the source class hierarchy that corresponds to a
+	 * field in the target class hierarchy, i.e. the field with the same name
+	 * declared by the class with the same name. This makes sure that fields
+	 * hidden by a field with the same name in a sub class are cloned as well.
+	 */
+	private static Field getSourceField(Class<?> sourceClass, Field targetField) {
+		final String declaringClassName = targetField.getDeclaringClass().getName();
+		Class<?> currentSourceClass = sourceClass;
+		while (currentSourceClass != null) {
+			if (currentSourceClass.getName().equals(declaringClassName)) {
+				try {
+					return currentSourceClass.getDeclaredField(targetField.getName());
+				} catch (NoSuchFieldException e) {
+					break;
+				}
+			}
+			currentSourceClass = currentSourceClass.getSuperclass();
+		}
+		return Whitebox.getField(sourceClass, targetField.getName());
+	}
+
+	private Object cloneClass(Class<?> source) {
+		if (source.isPrimitive() || isSunClass(source) || isJavaReflectClass(source)) {
+			return source;
+		}
+		return ClassLoaderUtil.loadClass(source, targetCL);
 	}
 
 	private Object cloneJavaReflectMethod(Object source) {
@@ -159,11 +286,11 @@ public class DeepCloner implements DeepClonerSPI {
 		return cls.getName().startsWith("java.lang.reflect");
 	}
 
-	private <T> boolean isSerializableCandidate(Class<T> targetClass, Object source) {
+	private <T> boolean isSerializableCandidate(Class<T> targetClass, Class<?> sourceClass) {
 		return isStandardJavaType(targetClass)
 				&& (isSerializable(targetClass) || isImpliticlySerializable(targetClass))
-				&& !Map.class.isAssignableFrom(source.getClass())
-				&& !Iterable.class.isAssignableFrom(source.getClass());
+				&& !Map.class.isAssignableFrom(sourceClass)
+				&& !Iterable.class.isAssignableFrom(sourceClass);
 	}
 
 	private static boolean isImpliticlySerializable(Class<?> cls) {
@@ -205,64 +332,31 @@ public class DeepCloner implements DeepClonerSPI {
 		}
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private Object cloneEnum(ClassLoader targetCL, Object source) {
-		Object target;
-		final Class enumClassLoadedByTargetCL = ClassLoaderUtil.loadClass(getType(source), targetCL);
-		target = getEnumValue(source, enumClassLoadedByTargetCL);
-		return target;
+	/*
+	 * The enum type of an enum constant with a body is an anonymous sub class
+	 * of the enum.
+	 */
+	private static Class<?> getEnumType(Class<?> cls) {
+		Class<?> enumType = cls;
+		while (!enumType.isEnum()) {
+			enumType = enumType.getSuperclass();
+		}
+		return enumType;
 	}
 
-	@SuppressWarnings("unchecked")
-	private <T> void cloneFields(ClassLoader targetCL, Class<T> targetClass, Object source, Object target,
-			Map<Object, Object> referenceMap, boolean cloneStandardJavaTypes) {
-		Class<?> currentTargetClass = targetClass;
-		while (currentTargetClass != null) {
-			for (Field field : currentTargetClass.getDeclaredFields()) {
-				if (field.getAnnotation(doNotClone) != null) {
-					continue;
-				}
-				field.setAccessible(true);
-				try {
-					final Field declaredField = Whitebox.getField(getType(source), field.getName());
-					declaredField.setAccessible(true);
-					final Object object = declaredField.get(source);
-					final Object instantiatedValue;
-					if (object == source) {
-						instantiatedValue = target;
-					} else if (referenceMap.containsKey(object)) {
-						instantiatedValue = referenceMap.get(object);
-					} else {
-						if (object == null && !isIterable(object)) {
-							instantiatedValue = object;
-						} else {
-							Class<Object> type = getType(object);
-							if (type.getName().equals("void")) {
-								type = Class.class.cast(Class.class);
-							}
-							final Class<Object> typeLoadedByCL = ClassLoaderUtil.loadClass(type, targetCL
-                            );
-							if (type.isEnum()) {
-								instantiatedValue = getEnumValue(object, typeLoadedByCL);
-							} else {
-								instantiatedValue = performClone(typeLoadedByCL, object, cloneStandardJavaTypes);
-							}
-						}
-					}
-
-					final boolean needsUnsafeWrite = field.isEnumConstant() || isStaticFinalModifier(field);
-					if (needsUnsafeWrite) {
-						UnsafeFieldWriter.write(field, target, instantiatedValue);
-					} else {
-						field.set(target, instantiatedValue);
-					}
-				} catch (RuntimeException e) {
-					throw e;
-				} catch (Exception e) {
-					throw new RuntimeException(e);
+	private void cloneFields(ClonePlan plan, Object source, Object target) {
+		try {
+			for (FieldPlan field : plan.fields) {
+				if (field.isPrimitive) {
+					field.copyPrimitive(source, target);
+				} else {
+					field.write(target, cloneReference(field.read(source), source, target));
 				}
 			}
-			currentTargetClass = currentTargetClass.getSuperclass();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -276,43 +370,130 @@ public class DeepCloner implements DeepClonerSPI {
 				|| field.getDeclaringClass().equals(Character.class) && field.getName().equals("MIN_RADIX");
 	}
 
-	private static boolean isIterable(final Object object) {
-		return object != null && isIterable(object.getClass());
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Enum getEnumValue(final Object enumValueOfSourceClassloader, final Class<?> enumTypeLoadedByTargetCL) {
+		return Enum.valueOf((Class) enumTypeLoadedByTargetCL, ((Enum) enumValueOfSourceClassloader).name());
 	}
 
-	private static boolean isIterable(final Class<?> cls) {
-		return Iterable.class.isAssignableFrom(cls);
+	private Object instantiateArray(ClonePlan plan, Object objectToClone) {
+		final int arrayLength = Array.getLength(objectToClone);
+		final Class<?> componentType = plan.targetClass.getComponentType();
+		final Object array = Array.newInstance(componentType, arrayLength);
+		referenceMap.put(objectToClone, array);
+		if (componentType.isPrimitive()) {
+			System.arraycopy(objectToClone, 0, array, 0, arrayLength);
+			return array;
+		}
+		final Object[] sourceArray = (Object[]) objectToClone;
+		final Object[] targetArray = (Object[]) array;
+		for (int i = 0; i < arrayLength; i++) {
+			targetArray[i] = cloneReference(sourceArray[i], objectToClone, array);
+		}
+		return array;
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static Enum getEnumValue(final Object enumValueOfSourceClassloader,
-			final Class<Object> enumTypeLoadedByTargetCL) {
-		return Enum.valueOf((Class) enumTypeLoadedByTargetCL, ((Enum) enumValueOfSourceClassloader).toString());
+	private static enum CloneStrategy {
+		/**
+		 * The clone refers to the same instance.
+		 */
+		REFERENCE,
+		ARRAY,
+		REFLECT_METHOD,
+		SERIALIZATION,
+		/**
+		 * The enum constant with the same name in the target class-loader.
+		 */
+		ENUM,
+		/**
+		 * A new instance of the target class whose fields are cloned.
+		 */
+		FIELDS
 	}
 
-	private Object instantiateArray(ClassLoader targetCL, Class<?> arrayClass, Object objectToClone,
-                                    boolean cloneStandardJavaTypes) {
-		final int arrayLength = Array.getLength(objectToClone);
-		final Object array = Array.newInstance(arrayClass.getComponentType(), arrayLength);
-		for (int i = 0; i < arrayLength; i++) {
-			final Object object = Array.get(objectToClone, i);
-			final Object performClone;
-			if (object == null) {
-				performClone = null;
+	/**
+	 * Describes how instances of a class are cloned to a class-loader.
+	 */
+	private static class ClonePlan {
+		final CloneStrategy strategy;
+		final Class<?> targetClass;
+		final FieldPlan[] fields;
+
+		ClonePlan(CloneStrategy strategy, Class<?> targetClass) {
+			this.strategy = strategy;
+			this.targetClass = targetClass;
+			this.fields = null;
+		}
+
+		ClonePlan(Class<?> targetClass, FieldPlan[] fields) {
+			this.strategy = CloneStrategy.FIELDS;
+			this.targetClass = targetClass;
+			this.fields = fields;
+		}
+	}
+
+	/**
+	 * Copies the value of a field of the source object to the corresponding
+	 * field of the clone. Primitive values are copied directly from the
+	 * source to the target using {@link Unsafe} if it's available, static
+	 * final fields and enum constants can only be written using
+	 * {@link Unsafe}.
+	 */
+	private static class FieldPlan {
+		final Field sourceField;
+		final Field targetField;
+		final boolean isPrimitive;
+		final boolean needsUnsafeWrite;
+		final Object sourceBase;
+		final long sourceOffset;
+		final Object targetBase;
+		final long targetOffset;
+
+		FieldPlan(Field sourceField, Field targetField) {
+			sourceField.setAccessible(true);
+			targetField.setAccessible(true);
+			this.sourceField = sourceField;
+			this.targetField = targetField;
+			needsUnsafeWrite = targetField.isEnumConstant() || isStaticFinalModifier(targetField);
+			final boolean canUseUnsafe = UnsafeFieldWriter.exception == null;
+			isPrimitive = targetField.getType().isPrimitive() && targetField.getType().equals(sourceField.getType())
+					&& canUseUnsafe;
+			if (isPrimitive || needsUnsafeWrite && canUseUnsafe) {
+				sourceBase = UnsafeFieldWriter.base(sourceField);
+				sourceOffset = UnsafeFieldWriter.offset(sourceField);
+				targetBase = UnsafeFieldWriter.base(targetField);
+				targetOffset = UnsafeFieldWriter.offset(targetField);
 			} else {
-				performClone = performClone(ClassLoaderUtil.loadClass(getType(object), targetCL),
-						object, cloneStandardJavaTypes);
+				sourceBase = null;
+				sourceOffset = -1;
+				targetBase = null;
+				targetOffset = -1;
 			}
-			Array.set(array, i, performClone);
 		}
-		return array;
+
+		Object read(Object source) throws IllegalAccessException {
+			return sourceField.get(source);
+		}
+
+		void write(Object target, Object value) throws IllegalAccessException {
+			if (needsUnsafeWrite) {
+				UnsafeFieldWriter.write(targetField, targetBase == null ? target : targetBase, targetOffset, value);
+			} else {
+				targetField.set(target, value);
+			}
+		}
+
+		void copyPrimitive(Object source, Object target) {
+			UnsafeFieldWriter.copy(targetField.getType(), sourceBase == null ? source : sourceBase, sourceOffset,
+					targetBase == null ? target : targetBase, targetOffset);
+		}
 	}
 
 	/**
 	 * Most of this code has been copied from the Sun14ReflectionProvider in the
 	 * XStream project. Some changes has been made, namely if the field is
-	 * static final then the {@link Unsafe#staticFieldOffset(Field)} method is
-	 * used instead of {@link Unsafe#objectFieldOffset(Field)}.
+	 * static then the {@link Unsafe#staticFieldOffset(Field)} method is used
+	 * instead of {@link Unsafe#objectFieldOffset(Field)} and the value is
+	 * written to the {@link Unsafe#staticFieldBase(Field)} of the field.
 	 * 
 	 * @author Joe Walnes
 	 * @author Brian Slesinsky
@@ -336,18 +517,49 @@ public class DeepCloner implements DeepClonerSPI {
 			unsafe = u;
 		}
 
-		public static void write(Field field, Object object, Object value) {
+		/**
+		 * @return The object that holds the value of a static field or
+		 *         <code>null</code> if the field is an instance field.
+		 */
+		static Object base(Field field) {
+			return Modifier.isStatic(field.getModifiers()) ? unsafe.staticFieldBase(field) : null;
+		}
+
+		static long offset(Field field) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				return unsafe.staticFieldOffset(field);
+			}
+			return unsafe.objectFieldOffset(field);
+		}
+
+		static void copy(Class<?> type, Object source, long sourceOffset, Object target, long targetOffset) {
+			if (type.equals(Integer.TYPE)) {
+				unsafe.putInt(target, targetOffset, unsafe.getInt(source, sourceOffset));
+			} else if (type.equals(Long.TYPE)) {
+				unsafe.putLong(target, targetOffset, unsafe.getLong(source, sourceOffset));
+			} else if (type.equals(Short.TYPE)) {
+				unsafe.putShort(target, targetOffset, unsafe.getShort(source, sourceOffset));
+			} else if (type.equals(Character.TYPE)) {
+				unsafe.putChar(target, targetOffset, unsafe.getChar(source, sourceOffset));
+			} else if (type.equals(Byte.TYPE)) {
+				unsafe.putByte(target, targetOffset, unsafe.getByte(source, sourceOffset));
+			} else if (type.equals(Float.TYPE)) {
+				unsafe.putFloat(target, targetOffset, unsafe.getFloat(source, sourceOffset));
+			} else if (type.equals(Double.TYPE)) {
+				unsafe.putDouble(target, targetOffset, unsafe.getDouble(source, sourceOffset));
+			} else if (type.equals(Boolean.TYPE)) {
+				unsafe.putBoolean(target, targetOffset, unsafe.getBoolean(source, sourceOffset));
+			} else {
+				throw new RuntimeException("Could not copy field of unknown type " + type);
+			}
+		}
+
+		static void write(Field field, Object object, long offset, Object value) {
 			if (exception != null) {
 				throw new RuntimeException("Could not set field " + object.getClass() + "." + field.getName(),
 						exception);
 			}
 			try {
-				final long offset;
-				if (DeepCloner.isStaticFinalModifier(field)) {
-					offset = unsafe.staticFieldOffset(field);
-				} else {
-					offset = unsafe.objectFieldOffset(field);
-				}
 				Class<?> type = field.getType();
 				if (type.isPrimitive()) {
 					if (type.equals(Integer.TYPE)) {
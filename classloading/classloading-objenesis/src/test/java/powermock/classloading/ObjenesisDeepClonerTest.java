@@ -52,6 +52,63 @@ public class ObjenesisDeepClonerTest {
         assertNotSame(clone, original);
     }
 
+    @Test
+    public void clonesPrimitiveArraysReferredToSeveralTimesOnce() throws Exception {
+        final int[] shared = new int[] { 1, 2 };
+        Object[] clone = new DeepCloner().clone(new Object[] { shared, shared });
+        assertNotSame(shared, clone[0]);
+        assertSame(clone[0], clone[1]);
+    }
+
+    @Test
+    public void usesReferencesPutBeforeCloning() throws Exception {
+        final NotSerializable kept = new NotSerializable();
+        final NotSerializable keptClone = new NotSerializable();
+        DeepCloner deepCloner = new DeepCloner();
+        deepCloner.putReference(kept, keptClone);
+        Object[] clone = deepCloner.clone(new Object[] { kept });
+        assertSame(keptClone, clone[0]);
+    }
+
+    @Test
+    public void clonesPrimitiveFieldsAndArraysOfObjectsOfTheSameClassRepeatedly() throws Exception {
+        final DeepCloner deepCloner = new DeepCloner();
+        for (int i = 0; i < 3; i++) {
+            final PrimitiveHolder original = new PrimitiveHolder(i);
+            PrimitiveHolder clone = deepCloner.clone(original);
+            assertEquals(i, clone.intValue);
+            assertEquals(i * 2L, clone.longValue);
+            assertTrue(Arrays.equals(original.doubles, clone.doubles));
+            assertNotSame(original.doubles, clone.doubles);
+        }
+    }
+
+    @Test
+    public void clonesEnumConstantsWithBodiesToTheSameConstant() throws Exception {
+        assertSame(EnumWithBody.CONSTANT, new DeepCloner().clone(EnumWithBody.CONSTANT));
+    }
+
+}
+
+class PrimitiveHolder {
+    final int intValue;
+    final long longValue;
+    final double[] doubles;
+
+    PrimitiveHolder(int value) {
+        intValue = value;
+        longValue = value * 2L;
+        doubles = new double[] { value, value + 0.5d };
+    }
+}
+
+enum EnumWithBody {
+    CONSTANT {
+        @Override
+        public String toString() {
+            return "constant";
+        }
+    }
 }
 
 class UnmodifiableListExample {
@@ -16,22 +16,33 @@
 package org.powermock.classloading;
 
 import com.thoughtworks.xstream.XStream;
-import org.powermock.classloading.spi.DeepClonerSPI;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import org.powermock.classloading.spi.ReferenceMappingDeepClonerSPI;
 
 /**
  * The purpose of the deep cloner is to create a deep clone of an object. An
  * object can also be cloned to a different class-loader.
  * <p>
  */
-public class DeepCloner implements DeepClonerSPI {
+public class DeepCloner implements ReferenceMappingDeepClonerSPI {
+    private static final String REFERENCE_ATTRIBUTE = "powermock-reference";
+
     private final XStream xStream;
 
+    private int numberOfReferences;
+
 	/**
 	 * Clone using the supplied ClassLoader.
 	 */
 	public DeepCloner(ClassLoader classLoader) {
         xStream = new XStream();
         xStream.omitField(ClassloaderExecutor.class, "classloader");
+        xStream.omitField(ClassloaderExecutor.class, "methods");
+        xStream.omitField(ClassloaderExecutor.class, "keptClones");
         xStream.setClassLoader(classLoader);
 	}
 
@@ -53,4 +64,57 @@ public class DeepCloner implements DeepClonerSPI {
         final String serialized = xStream.toXML(objectToClone);
         return (T) xStream.fromXML(serialized);
     }
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void putReference(Object original, Object clone) {
+		xStream.registerConverter(new ReferenceConverter(original, clone, String.valueOf(numberOfReferences++)),
+				XStream.PRIORITY_VERY_HIGH);
+	}
+
+	/*
+	 * Writes a reference id instead of original and reads it back as clone.
+	 * Other instances of the types of original and clone are passed on to
+	 * the converters that were used for the types before.
+	 */
+	private class ReferenceConverter implements Converter {
+		private final Object original;
+		private final Object clone;
+		private final String id;
+		private final Converter originalTypeConverter;
+		private final Converter cloneTypeConverter;
+
+		ReferenceConverter(Object original, Object clone, String id) {
+			this.original = original;
+			this.clone = clone;
+			this.id = id;
+			originalTypeConverter = xStream.getConverterLookup().lookupConverterForType(original.getClass());
+			cloneTypeConverter = xStream.getConverterLookup().lookupConverterForType(clone.getClass());
+		}
+
+		@SuppressWarnings("rawtypes")
+		public boolean canConvert(Class type) {
+			return type == original.getClass() || type == clone.getClass();
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+			if (source == original) {
+				writer.addAttribute(REFERENCE_ATTRIBUTE, id);
+			} else {
+				getConverter(source.getClass()).marshal(source, writer, context);
+			}
+		}
+
+		public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+			if (id.equals(reader.getAttribute(REFERENCE_ATTRIBUTE))) {
+				return clone;
+			}
+			return getConverter(context.getRequiredType()).unmarshal(reader, context);
+		}
+
+		private Converter getConverter(Class<?> type) {
+			return type == original.getClass() ? originalTypeConverter : cloneTypeConverter;
+		}
+	}
 }
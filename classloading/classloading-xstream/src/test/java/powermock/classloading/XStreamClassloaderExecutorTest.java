@@ -24,6 +24,7 @@ import org.powermock.core.transformers.MockTransformer;
 import powermock.classloading.classes.*;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.concurrent.Callable;
@@ -265,6 +266,26 @@ public class XStreamClassloaderExecutorTest {
 		});
 	}
 
+	@Test
+	public void keptInstanceIsClonedOnceAndTheSameCloneIsUsedInLaterExecutions() throws Exception {
+		final MockClassLoader classloader = createClassloader();
+		final MyCollectionHolder keptInstance = new MyCollectionHolder(new ArrayList<String>());
+		final ClassloaderExecutor executor = new ClassloaderExecutor(classloader);
+		final Callable<Integer> callable = new Callable<Integer>() {
+			@SuppressWarnings("unchecked")
+			public Integer call() throws Exception {
+				assertEquals(MockClassLoader.class.getName(), keptInstance.getClass().getClassLoader().getClass().getName());
+				final Collection<String> collection = (Collection<String>) keptInstance.getMyCollection();
+				collection.add("executed");
+				return collection.size();
+			}
+		};
+
+		assertEquals(1, (int) executor.execute(callable, keptInstance));
+		assertEquals(2, (int) executor.execute(callable, keptInstance));
+		assertTrue(keptInstance.getMyCollection().isEmpty());
+	}
+
 	private MockClassLoader createClassloader() {
 		MockClassLoader classloader = new MockClassLoader(new String[] { MyClass.class.getName(),
 				MyArgument.class.getName(), MyReturnValue.class.getName() });
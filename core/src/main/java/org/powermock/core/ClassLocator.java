@@ -1,7 +1,23 @@
 package org.powermock.core;
 
 public class ClassLocator extends SecurityManager {
+	/**
+	 * @return The class that called the {@link MockGateway}, i.e. the first
+	 *         class on the call stack that doesn't belong to the gateway or the
+	 *         {@link MockRepository}.
+	 */
 	public static Class getCallerClass() {
-		return new ClassLocator().getClassContext()[4];
+		final Class[] classContext = new ClassLocator().getClassContext();
+		for (Class type : classContext) {
+			if (!isInternalClass(type)) {
+				return type;
+			}
+		}
+		return classContext[classContext.length - 1];
+	}
+
+	private static boolean isInternalClass(Class type) {
+		return type == ClassLocator.class || type == MockGateway.class || type == MockRepository.class
+				|| type.getEnclosingClass() == MockRepository.class;
 	}
 }
\ No newline at end of file
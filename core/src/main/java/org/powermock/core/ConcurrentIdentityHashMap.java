@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe map that compares keys by identity (<code>==</code>) and
+ * hashes them by {@link System#identityHashCode(Object)}, which means that
+ * lookups run in constant time regardless of how <code>equals</code> and
+ * <code>hashCode</code> are implemented (or mocked) by the keys. Reads never
+ * lock.
+ * <p>
+ * The keys may optionally be weakly referenced. An entry with a weakly
+ * referenced key is removed once the key has been garbage collected, which is
+ * useful when the keys are mocks that may be abandoned long before the map is
+ * cleared.
+ */
+public class ConcurrentIdentityHashMap<K, V> {
+
+    private final ConcurrentMap<Key, V> map = new ConcurrentHashMap<Key, V>();
+
+    private final ReferenceQueue<Object> queue;
+
+    /**
+     * Create a map with strongly referenced keys.
+     */
+    public ConcurrentIdentityHashMap() {
+        this(false);
+    }
+
+    /**
+     * @param weakKeys
+     *            <code>true</code> if the keys should be weakly referenced.
+     */
+    public ConcurrentIdentityHashMap(boolean weakKeys) {
+        queue = weakKeys ? new ReferenceQueue<Object>() : null;
+    }
+
+    /*
+     * Lookups are usually made when the map is empty, e.g. when the mock
+     * gateway looks for a mock of an instance that isn't mocked, in which
+     * case no lookup key is created.
+     */
+    public V get(Object key) {
+        return key == null || map.isEmpty() ? null : map.get(new StrongKey(key));
+    }
+
+    public boolean containsKey(Object key) {
+        return key != null && !map.isEmpty() && map.containsKey(new StrongKey(key));
+    }
+
+    /**
+     * @return The previous value associated with <code>key</code> or
+     *         <code>null</code>.
+     */
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new IllegalArgumentException("key and value cannot be null");
+        }
+        expungeStaleEntries();
+        return map.put(queue == null ? new StrongKey(key) : new WeakKey(key, queue), value);
+    }
+
+    public V remove(Object key) {
+        expungeStaleEntries();
+        return key == null ? null : map.remove(new StrongKey(key));
+    }
+
+    public void clear() {
+        map.clear();
+        expungeStaleEntries();
+    }
+
+    /**
+     * @return The number of entries, including entries whose weakly
+     *         referenced keys have been garbage collected but not yet removed.
+     */
+    public int size() {
+        expungeStaleEntries();
+        return map.size();
+    }
+
+    private void expungeStaleEntries() {
+        if (queue == null) {
+            return;
+        }
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            map.remove(((KeyReference) reference).key);
+        }
+    }
+
+    private static abstract class Key {
+        abstract Object referent();
+    }
+
+    private static final class StrongKey extends Key {
+        private final Object referent;
+
+        StrongKey(Object referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        Object referent() {
+            return referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).referent() == referent;
+        }
+    }
+
+    /*
+     * A Key cannot extend WeakReference so the weak key delegates to one.
+     * The reference keeps a pointer back to the key so that the entry can be
+     * removed when the reference is enqueued.
+     */
+    private static final class WeakKey extends Key {
+        private final KeyReference reference;
+        private final int hashCode;
+
+        WeakKey(Object referent, ReferenceQueue<Object> queue) {
+            this.reference = new KeyReference(referent, queue, this);
+            this.hashCode = System.identityHashCode(referent);
+        }
+
+        @Override
+        Object referent() {
+            return reference.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            final Object referent = referent();
+            return referent != null && other instanceof Key && ((Key) other).referent() == referent;
+        }
+    }
+
+    private static final class KeyReference extends WeakReference<Object> {
+        private final WeakKey key;
+
+        KeyReference(Object referent, ReferenceQueue<Object> queue, WeakKey key) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+}
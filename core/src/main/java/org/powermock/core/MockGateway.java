@@ -16,10 +16,14 @@
 package org.powermock.core;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.powermock.core.classloader.MockClassLoader;
 import org.powermock.core.spi.MethodInvocationControl;
 import org.powermock.core.spi.NewInvocationControl;
 import org.powermock.reflect.exceptions.MethodNotFoundException;
@@ -54,39 +58,128 @@ public class MockGateway {
 	 */
 	public static boolean MOCK_GET_CLASS_METHOD = false;
 
+	/*
+	 * Resolved methods for classes loaded by the system class loader (or its
+	 * parents) which are never unloaded. Classes loaded by a mock class loader
+	 * use the cache of their class loader.
+	 */
+	private static final ResolvedMethodCache systemResolvedMethodCache = new ResolvedMethodCache();
+
+	private static final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+
+	/*
+	 * Returned by intercept when the call must be passed on to the method
+	 * invocation control of a mock or to a method proxy, i.e. when the
+	 * arguments of the call are needed.
+	 */
+	private static final Object INVOKE_CONTROL = new Object();
+	private static final Object INVOKE_PROXY = new Object();
+
+	/*
+	 * The methods whose method proxies are being invoked by the current
+	 * thread, innermost last.
+	 */
+	private static final ThreadLocal<List<Method>> methodProxiesInProgress = new ThreadLocal<List<Method>>() {
+		@Override
+		protected List<Method> initialValue() {
+			return new ArrayList<Method>();
+		}
+	};
+
+	/**
+	 * Used by the transformer to skip the call to <code>methodCall</code>
+	 * (and thus the creation of the argument array) when nothing that could
+	 * intercept calls to methods declared in the class has been
+	 * registered.
+	 * 
+	 * @param className
+	 *            The name of the class declaring the instrumented method.
+	 */
+	public static boolean hasInterceptions(String className) {
+		return MockRepository.hasInterceptions(className);
+	}
+
 	// used for static methods
 	public static Object methodCall(Class<?> type, String methodName, Object[] args, Class<?>[] sig,
 			String returnTypeAsString) throws Throwable {
 		return doMethodCall(type, methodName, args, sig, returnTypeAsString);
 	}
 
+	/**
+	 * Used for static methods by the transformer. The
+	 * <code>callSiteId</code> is the name of the method followed by its
+	 * descriptor, for example <code>myMethod(ILjava/lang/String;)V</code>, and
+	 * is used to look up the method without resolving it by reflection on
+	 * every call.
+	 * <p>
+	 * Unlike {@link #methodCall(Class, String, Object[], Class[], String)}
+	 * this method returns {@link #SUPPRESS} rather than the default value of
+	 * the return type when the call is suppressed. The transformer already
+	 * knows the return type of the method and returns its default value
+	 * directly.
+	 */
+	public static Object methodCall(Class<?> type, String methodName, Object[] args, String callSiteId)
+			throws Throwable {
+		return doMethodCall(type, methodName, args, callSiteId);
+	}
+
 	private static Object doMethodCall(Object object, String methodName, Object[] args, Class<?>[] sig,
 			String returnTypeAsString) throws Throwable, NoSuchMethodException {
-		if (!shouldMockMethod(methodName, sig)) {
+		if (!shouldMockMethod(methodName, sig.length)) {
 			return PROCEED;
 		}
-		Object returnValue = null;
+		final Class<?> objectType = getObjectType(object);
+		final Method method = resolveMethod(objectType, methodName, sig);
+		final Object returnValue = doMethodCall(object, objectType, method, args);
+		if (returnValue == SUPPRESS) {
+			return TypeUtils.getDefaultValue(returnTypeAsString);
+		}
+		return returnValue;
+	}
 
-		MethodInvocationControl methodInvocationControl = null;
-		Class<?> objectType = null;
+	private static Object doMethodCall(Object object, String methodName, Object[] args, String callSiteId)
+			throws Throwable, NoSuchMethodException {
+		final Class<?> objectType = getObjectType(object);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		return doMethodCall(object, objectType, method, args);
+	}
+
+	/**
+	 * @return The method invoked at the call site with id
+	 *         <code>callSiteId</code> or <code>null</code> if calls to the
+	 *         method shouldn't be intercepted.
+	 */
+	private static Method getMethod(Class<?> objectType, String methodName, String callSiteId)
+			throws ClassNotFoundException {
+		if (isStandardMethodName(methodName)
+				&& !shouldMockMethod(methodName, getParameterCount(callSiteId, methodName.length()))) {
+			return null;
+		}
+		final ResolvedMethodCache resolvedMethodCache = getResolvedMethodCache(objectType);
+		Method method = resolvedMethodCache == null ? null : resolvedMethodCache.get(objectType, callSiteId);
+		if (method == null) {
+			final Class<?>[] sig = getParameterTypes(callSiteId, methodName.length(), objectType.getClassLoader());
+			method = resolveMethod(objectType, methodName, sig);
+			if (resolvedMethodCache != null) {
+				resolvedMethodCache.put(objectType, callSiteId, method);
+			}
+		}
+		return method;
+	}
 
+	private static Class<?> getObjectType(Object object) {
 		if (object instanceof Class<?>) {
-			objectType = (Class<?>) object;
-			methodInvocationControl = MockRepository.getStaticMethodInvocationControl(objectType);
-		} else {
-			final Class<? extends Object> type = object.getClass();
-			objectType = WhiteboxImpl.getUnmockedType(type);
-			methodInvocationControl = MockRepository.getInstanceMethodInvocationControl(object);
+			return (Class<?>) object;
 		}
+		return WhiteboxImpl.getUnmockedType(object.getClass());
+	}
 
-		/*
-		 * if invocationControl is null or the method is not mocked, invoke
-		 * original method or suppress the method code otherwise invoke the
-		 * invocation handler.
-		 */
-		Method method = null;
+	private static Method resolveMethod(Class<?> objectType, String methodName, Class<?>[] sig) {
 		try {
-			method = WhiteboxImpl.getBestMethodCandidate(objectType, methodName, sig, true);
+			return WhiteboxImpl.getBestMethodCandidate(objectType, methodName, sig, true);
 		} catch (MethodNotFoundException e) {
 			/*
 			 * Dirty hack to get around issue 110
@@ -96,70 +189,215 @@ public class MockGateway {
 			 * mocking static methods in system classes.
 			 */
 			try {
-				method = WhiteboxImpl.getMethod(Class.class, methodName, sig);
+				return WhiteboxImpl.getMethod(Class.class, methodName, sig);
 			} catch (MethodNotFoundException e2) {
 				throw e;
 			}
 		}
+	}
+
+	/**
+	 * @return The cache to use for methods invoked on <code>type</code> or
+	 *         <code>null</code> if the methods shouldn't be cached because the
+	 *         cache could prevent the class loader of <code>type</code> from
+	 *         being garbage collected.
+	 */
+	private static ResolvedMethodCache getResolvedMethodCache(Class<?> type) {
+		final ClassLoader classLoader = type.getClassLoader();
+		if (classLoader instanceof MockClassLoader) {
+			return ((MockClassLoader) classLoader).getResolvedMethodCache();
+		} else if (classLoader == null || classLoader == systemClassLoader || classLoader == systemClassLoader.getParent()) {
+			return systemResolvedMethodCache;
+		}
+		return null;
+	}
+
+	private static Object doMethodCall(Object object, Class<?> objectType, Method method, Object[] args)
+			throws Throwable {
+		final Object returnValue = intercept(object, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, object, objectType, method, args);
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Decides what to do with a call without looking at its arguments so that
+	 * the typed entry points (e.g.
+	 * {@link #methodCallI(Object, String, int, String)}) only need to
+	 * create the argument array when the call is delegated to a mock or a
+	 * method proxy.
+	 * 
+	 * @return The value to return from the intercepted method,
+	 *         {@link #PROCEED}, {@link #SUPPRESS} or {@link #INVOKE_CONTROL}
+	 *         or {@link #INVOKE_PROXY} if the call must be passed on together
+	 *         with its arguments using
+	 *         {@link #invoke(Object, Object, Class, Method, Object[])}.
+	 */
+	private static Object intercept(Object object, Class<?> objectType, Method method) {
+		final MethodInvocationControl methodInvocationControl = getMethodInvocationControl(object, objectType);
+
+		/*
+		 * if invocationControl is null or the method is not mocked, invoke
+		 * original method or suppress the method code otherwise invoke the
+		 * invocation handler.
+		 */
 		if (methodInvocationControl != null && methodInvocationControl.isMocked(method) && shouldMockThisCall()) {
-			returnValue = methodInvocationControl.invoke(object, method, args);
-			if (returnValue == SUPPRESS) {
-				returnValue = TypeUtils.getDefaultValue(returnTypeAsString);
+			return INVOKE_CONTROL;
+		} else if (MockRepository.hasMethodProxy(method) && !isInvokingMethodProxy(method)) {
+			return INVOKE_PROXY;
+		} else if (MockRepository.shouldSuppressMethod(method, objectType)) {
+			return SUPPRESS;
+		} else if (MockRepository.shouldStubMethod(method)) {
+			return MockRepository.getMethodToStub(method);
+		} else {
+			return PROCEED;
+		}
+	}
+
+	private static boolean isInvocation(Object returnValue) {
+		return returnValue == INVOKE_CONTROL || returnValue == INVOKE_PROXY;
+	}
+
+	private static Object invoke(Object invocation, Object object, Class<?> objectType, Method method, Object[] args)
+			throws Throwable {
+		Object returnValue = null;
+		if (invocation == INVOKE_CONTROL) {
+			returnValue = getMethodInvocationControl(object, objectType).invoke(object, method, args);
+		} else {
+			final InvocationHandler invocationHandler = MockRepository.getMethodProxy(method);
+			if (invocationHandler == null) {
+				// Removed by another thread since intercept found it
+				return PROCEED;
 			}
-		} else if (MockRepository.hasMethodProxy(method)) {
 			/*
-			 * We must temporary remove the method proxy when invoking the
-			 * invocation handler because if the invocation handler delegates
-			 * the call we will end up here again and we'll get a
-			 * StackOverflowError.
+			 * If the invocation handler delegates the call we will end up here
+			 * again so the method is marked as being proxied by this thread
+			 * to call the original method instead of getting a
+			 * StackOverflowError. Other threads still see the proxy.
 			 */
-			final InvocationHandler invocationHandler = MockRepository.removeMethodProxy(method);
+			final List<Method> methods = methodProxiesInProgress.get();
+			methods.add(method);
 			try {
 				returnValue = invocationHandler.invoke(object, method, args);
 			} finally {
-				// Set the method proxy again after the invocation
-				MockRepository.putMethodProxy(method, invocationHandler);
+				methods.remove(methods.size() - 1);
 			}
-
-		} else if (MockRepository.shouldSuppressMethod(method, objectType)) {
-			returnValue = TypeUtils.getDefaultValue(returnTypeAsString);
-		} else if (MockRepository.shouldStubMethod(method)) {
-			returnValue = MockRepository.getMethodToStub(method);
-		} else {
-			returnValue = PROCEED;
 		}
 		return returnValue;
 	}
 
-	private static boolean shouldMockMethod(String methodName, Class<?>[] sig) {
-		if (isJavaStandardMethod(methodName, sig) && !MOCK_STANDARD_METHODS) {
+	private static boolean isInvokingMethodProxy(Method method) {
+		final List<Method> methods = methodProxiesInProgress.get();
+		for (int i = 0; i < methods.size(); i++) {
+			if (methods.get(i).equals(method)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static MethodInvocationControl getMethodInvocationControl(Object object, Class<?> objectType) {
+		if (object instanceof Class<?>) {
+			return MockRepository.getStaticMethodInvocationControl(objectType);
+		}
+		return MockRepository.getInstanceMethodInvocationControl(object);
+	}
+
+	private static boolean shouldMockMethod(String methodName, int parameterCount) {
+		if (isJavaStandardMethod(methodName, parameterCount) && !MOCK_STANDARD_METHODS) {
 			return false;
-		} else if (isGetClassMethod(methodName, sig) && !MOCK_GET_CLASS_METHOD) {
+		} else if (isGetClassMethod(methodName, parameterCount) && !MOCK_GET_CLASS_METHOD) {
 			return false;
 		} else {
 			return true;
 		}
 	}
 
-	private static boolean isJavaStandardMethod(String methodName, Class<?>[] sig) {
-		return (methodName.equals("equals") && sig.length == 1) || (methodName.equals("hashCode") && sig.length == 0)
-				|| (methodName.equals("toString") && sig.length == 0);
+	private static boolean isStandardMethodName(String methodName) {
+		return methodName.equals("equals") || methodName.equals("hashCode") || methodName.equals("toString")
+				|| methodName.equals("getClass");
 	}
 
-	private static boolean isGetClassMethod(String methodName, Class<?>[] sig) {
-		return methodName.equals("getClass") && sig.length == 0;
+	private static boolean isJavaStandardMethod(String methodName, int parameterCount) {
+		return (methodName.equals("equals") && parameterCount == 1) || (methodName.equals("hashCode") && parameterCount == 0)
+				|| (methodName.equals("toString") && parameterCount == 0);
 	}
 
-	private static boolean shouldMockThisCall() {
-		Object shouldSkipMockingOfNextCall = MockRepository.getAdditionalState(DONT_MOCK_NEXT_CALL);
-		final boolean shouldMockThisCall;
-		if (shouldSkipMockingOfNextCall == null) {
-			shouldMockThisCall = true;
-		} else {
-			shouldMockThisCall = false;
+	private static boolean isGetClassMethod(String methodName, int parameterCount) {
+		return methodName.equals("getClass") && parameterCount == 0;
+	}
+
+	/**
+	 * @return The number of parameters in the method descriptor that starts at
+	 *         <code>offset</code> in <code>descriptor</code>.
+	 */
+	private static int getParameterCount(String descriptor, int offset) {
+		int parameterCount = 0;
+		int i = offset + 1;
+		while (descriptor.charAt(i) != ')') {
+			i = skipType(descriptor, i);
+			parameterCount++;
+		}
+		return parameterCount;
+	}
+
+	/**
+	 * @return The parameter types of the method descriptor that starts at
+	 *         <code>offset</code> in <code>descriptor</code> loaded by
+	 *         <code>classLoader</code>.
+	 */
+	private static Class<?>[] getParameterTypes(String descriptor, int offset, ClassLoader classLoader)
+			throws ClassNotFoundException {
+		final Class<?>[] parameterTypes = new Class<?>[getParameterCount(descriptor, offset)];
+		int i = offset + 1;
+		for (int parameter = 0; parameter < parameterTypes.length; parameter++) {
+			final int end = skipType(descriptor, i);
+			parameterTypes[parameter] = getType(descriptor.substring(i, end), classLoader);
+			i = end;
 		}
-		MockRepository.removeAdditionalState(DONT_MOCK_NEXT_CALL);
-		return shouldMockThisCall;
+		return parameterTypes;
+	}
+
+	private static int skipType(String descriptor, int i) {
+		while (descriptor.charAt(i) == '[') {
+			i++;
+		}
+		if (descriptor.charAt(i) == 'L') {
+			i = descriptor.indexOf(';', i);
+		}
+		return i + 1;
+	}
+
+	private static Class<?> getType(String typeDescriptor, ClassLoader classLoader) throws ClassNotFoundException {
+		switch (typeDescriptor.charAt(0)) {
+		case 'Z':
+			return boolean.class;
+		case 'B':
+			return byte.class;
+		case 'C':
+			return char.class;
+		case 'S':
+			return short.class;
+		case 'I':
+			return int.class;
+		case 'J':
+			return long.class;
+		case 'F':
+			return float.class;
+		case 'D':
+			return double.class;
+		case 'L':
+			return Class.forName(typeDescriptor.substring(1, typeDescriptor.length() - 1).replace('/', '.'), false, classLoader);
+		default:
+			// Array, Class.forName expects e.g. "[Ljava.lang.String;" or "[I"
+			return Class.forName(typeDescriptor.replace('/', '.'), false, classLoader);
+		}
+	}
+
+	private static boolean shouldMockThisCall() {
+		// Checks and resets the flag in a single operation
+		return MockRepository.removeAdditionalState(DONT_MOCK_NEXT_CALL) == null;
 	}
 
 	// used for instance methods
@@ -168,6 +406,131 @@ public class MockGateway {
 		return doMethodCall(instance, methodName, args, sig, returnTypeAsString);
 	}
 
+	/**
+	 * Used for instance methods by the transformer, see
+	 * {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCall(Object instance, String methodName, Object[] args, String callSiteId)
+			throws Throwable {
+		return doMethodCall(instance, methodName, args, callSiteId);
+	}
+
+	/*
+	 * The typed entry points below are used by the transformer for methods
+	 * without parameters, with a single int or long parameter or with up to
+	 * three reference parameters. They take the arguments as they are so that
+	 * nothing is boxed and no argument array is created unless the call is
+	 * passed on to a mock or a method proxy. classOrInstance is the class for
+	 * static methods and the instance for instance methods.
+	 */
+
+	/**
+	 * Used by the transformer for methods without parameters, see
+	 * {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCall0(Object classOrInstance, String methodName, String callSiteId) throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[0]);
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Used by the transformer for methods with a single <code>int</code>
+	 * parameter, see {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCallI(Object classOrInstance, String methodName, int arg0, String callSiteId)
+			throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[] { arg0 });
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Used by the transformer for methods with a single <code>long</code>
+	 * parameter, see {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCallJ(Object classOrInstance, String methodName, long arg0, String callSiteId)
+			throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[] { arg0 });
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Used by the transformer for methods with a single reference parameter,
+	 * see {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCallObj1(Object classOrInstance, String methodName, Object arg0, String callSiteId)
+			throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[] { arg0 });
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Used by the transformer for methods with two reference parameters, see
+	 * {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCallObj2(Object classOrInstance, String methodName, Object arg0, Object arg1,
+			String callSiteId) throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[] { arg0, arg1 });
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Used by the transformer for methods with three reference parameters, see
+	 * {@link #methodCall(Class, String, Object[], String)}.
+	 */
+	public static Object methodCallObj3(Object classOrInstance, String methodName, Object arg0, Object arg1,
+			Object arg2, String callSiteId) throws Throwable {
+		final Class<?> objectType = getObjectType(classOrInstance);
+		final Method method = getMethod(objectType, methodName, callSiteId);
+		if (method == null) {
+			return PROCEED;
+		}
+		final Object returnValue = intercept(classOrInstance, objectType, method);
+		if (isInvocation(returnValue)) {
+			return invoke(returnValue, classOrInstance, objectType, method, new Object[] { arg0, arg1, arg2 });
+		}
+		return returnValue;
+	}
+
 	public static Object newInstanceCall(Class<?> type, Object[] args, Class<?>[] sig) throws Throwable {
 		final NewInvocationControl<?> newInvocationControl = MockRepository.getNewInstanceControl(type);
 		if (newInvocationControl != null) {
@@ -197,9 +560,25 @@ public class MockGateway {
 		return PROCEED;
 	}
 
+	/**
+	 * Used by the transformer to skip the call to <code>fieldCall</code> when
+	 * no field is suppressed.
+	 */
+	public static boolean hasFieldSuppressions() {
+		return MockRepository.hasFieldSuppressions();
+	}
+
 	public static Object fieldCall(Object instanceOrClassContainingTheField, Class<?> classDefiningField,
 			String fieldName, Class<?> fieldType) {
-		if (MockRepository.shouldSuppressField(WhiteboxImpl.getField(classDefiningField, fieldName))) {
+		final ResolvedMethodCache resolvedMethodCache = getResolvedMethodCache(classDefiningField);
+		Field field = resolvedMethodCache == null ? null : resolvedMethodCache.getField(classDefiningField, fieldName);
+		if (field == null) {
+			field = WhiteboxImpl.getField(classDefiningField, fieldName);
+			if (resolvedMethodCache != null) {
+				resolvedMethodCache.putField(classDefiningField, fieldName, field);
+			}
+		}
+		if (MockRepository.shouldSuppressField(field)) {
 			return TypeUtils.getDefaultValue(fieldType);
 		}
 		return PROCEED;
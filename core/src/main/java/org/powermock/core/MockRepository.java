@@ -22,77 +22,76 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Hold mock objects that should be used instead of the concrete implementation.
  * Mock transformers may use this class to gather information on which classes
  * and methods that are mocked.
+ * <p>
+ * The state is kept in concurrent maps so that the methods used when
+ * intercepting a call never need to take a lock. By default all state is
+ * shared by all threads. A test that runs in parallel with other tests can
+ * call {@link #beginTestScope()} to get state of its own that is only
+ * visible to the current thread and the threads it starts. State registered
+ * outside of any test scope (for example mocks created when the test instance
+ * is constructed) is still visible from within a test scope.
  */
 public class MockRepository {
 
-	private static Set<Object> objectsToAutomaticallyReplayAndVerify = new IdentityHashSet<Object>();
-
-	private static Map<Class<?>, NewInvocationControl<?>> newSubstitutions = new HashMap<Class<?>, NewInvocationControl<?>>();
-
 	/**
-	 * Holds info about general method invocation mocks for classes.
+	 * The state used by threads that are not in a test scope.
 	 */
-	private static Map<Class<?>, MethodInvocationControl> classMocks = new HashMap<Class<?>, MethodInvocationControl>();
+	private static final State globalState = new State();
 
-	/**
-	 * Holds info about general method invocation mocks for instances.
-	 */
-	private static Map<Object, MethodInvocationControl> instanceMocks = new ListMap<Object, MethodInvocationControl>();
-
-	/**
-	 * Holds info about which methods that should return a substitute/another
-	 * instance instead of the default instance.
-	 */
-	private static Map<Method, Object> substituteReturnValues = new HashMap<Method, Object>();
-
-	/**
-	 * Holds info about which methods that are proxied.
-	 */
-	private static Map<Method, InvocationHandler> methodProxies = new HashMap<Method, InvocationHandler>();
+	private static final InheritableThreadLocal<State> testScopedState = new InheritableThreadLocal<State>();
 
 	/**
 	 * Holds info about which class that should have their static initializers
-	 * suppressed.
+	 * suppressed. This is never scoped since a class is only initialized once
+	 * per class loader.
 	 */
-	private static Set<String> suppressStaticInitializers = new HashSet<String>();
+	private static final Map<String, Boolean> suppressStaticInitializers = new ConcurrentHashMap<String, Boolean>();
 
 	/**
-	 * Sometimes mock frameworks needs to store additional state. They can do
-	 * this using this key/value based approach.
+	 * Used in place of <code>null</code> values since they are not allowed in
+	 * the concurrent maps.
 	 */
-	private static Map<String, Object> additionalState = new HashMap<String, Object>();
+	private static final Object NULL_VALUE = new Object();
 
 	/**
-	 * Set of constructors that should be suppressed.
+	 * Start a test scope for the current thread. Until
+	 * {@link #endTestScope()} is called everything registered by the current
+	 * thread (and threads started by it) is kept apart from other threads and
+	 * {@link #clear()} only clears the state of the scope.
 	 */
-	private static final Set<Constructor<?>> suppressConstructor = new HashSet<Constructor<?>>();
-
-	/**
-	 * Set of methods that should be suppressed.
-	 */
-	private static final Set<Method> suppressMethod = new HashSet<Method>();
-
-	/**
-	 * Set of methods that should be suppressed.
-	 */
-	private static final Set<Field> suppressField = new HashSet<Field>();
+	public static void beginTestScope() {
+		testScopedState.set(new State());
+	}
 
 	/**
-	 * Set of field types that should always be suppressed regardless of
-	 * instance.
+	 * Clear the state of the test scope of the current thread (running all
+	 * after method runners registered in it) and end the scope. Does nothing
+	 * if the current thread is not in a test scope.
 	 */
-	private static final Set<String> suppressFieldTypes = new HashSet<String>();
-
-    /**
-     * Set of runnables that will be executed after the test (method) is completed.
-	 */
-	private static final Set<Runnable> afterMethodRunners = new HashSet<Runnable>();
+	public static void endTestScope() {
+		final State state = testScopedState.get();
+		if (state != null) {
+			try {
+				state.clear();
+			} finally {
+				testScopedState.remove();
+			}
+		}
+	}
 
 	/**
 	 * Clear all state of the mock repository except for static initializers.
@@ -104,71 +103,86 @@ public class MockRepository {
 	 * but suppression of static initializers are different because this state
 	 * can only be set once per class per CL. That's why we cannot remove this
 	 * state.
+	 * <p>
+	 * If the current thread is in a test scope only the state of that scope is
+	 * cleared, otherwise the state shared by all threads that are not in a
+	 * test scope is cleared.
 	 */
-	public synchronized static void clear() {
-		newSubstitutions.clear();
-		classMocks.clear();
-		instanceMocks.clear();
-		objectsToAutomaticallyReplayAndVerify.clear();
-		additionalState.clear();
-		suppressConstructor.clear();
-		suppressMethod.clear();
-		substituteReturnValues.clear();
-		suppressField.clear();
-		suppressFieldTypes.clear();
-		methodProxies.clear();
-        for (Runnable runnable : afterMethodRunners) {
-            runnable.run();
-        }
-        afterMethodRunners.clear();
+	public static void clear() {
+		currentState().clear();
 	}
 
 	/**
 	 * Removes an object from the MockRepository if it exists.
 	 */
 	public static void remove(Object mock) {
+		final State state = currentState();
 		if (mock instanceof Class<?>) {
-			if (newSubstitutions.containsKey(mock)) {
-				newSubstitutions.remove(mock);
-			}
-			if (classMocks.containsKey(mock)) {
-				classMocks.remove(mock);
-			}
-		} else if (instanceMocks.containsKey(mock)) {
-			instanceMocks.remove(mock);
+			state.newSubstitutions.remove(mock);
+			state.classMocks.remove(mock);
+		} else {
+			state.instanceMocks.remove(mock);
 		}
 	}
 
-	public static synchronized MethodInvocationControl getStaticMethodInvocationControl(Class<?> type) {
-		return classMocks.get(type);
+	public static MethodInvocationControl getStaticMethodInvocationControl(Class<?> type) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final MethodInvocationControl invocationControl = scoped.classMocks.get(type);
+			if (invocationControl != null) {
+				return invocationControl;
+			}
+		}
+		return globalState.classMocks.get(type);
 	}
 
-	public static synchronized MethodInvocationControl putStaticMethodInvocationControl(Class<?> type, MethodInvocationControl invocationControl) {
-		return classMocks.put(type, invocationControl);
+	public static MethodInvocationControl putStaticMethodInvocationControl(Class<?> type, MethodInvocationControl invocationControl) {
+		final State state = currentState();
+		state.addInterceptedType(type);
+		return put(state.classMocks, type, invocationControl);
 	}
 
-	public static synchronized MethodInvocationControl removeClassMethodInvocationControl(Class<?> type) {
-		return classMocks.remove(type);
+	public static MethodInvocationControl removeClassMethodInvocationControl(Class<?> type) {
+		return currentState().classMocks.remove(type);
 	}
 
-	public static synchronized MethodInvocationControl getInstanceMethodInvocationControl(Object instance) {
-		return instanceMocks.get(instance);
+	public static MethodInvocationControl getInstanceMethodInvocationControl(Object instance) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final MethodInvocationControl invocationControl = scoped.instanceMocks.get(instance);
+			if (invocationControl != null) {
+				return invocationControl;
+			}
+		}
+		return globalState.instanceMocks.get(instance);
 	}
 
-	public static synchronized MethodInvocationControl putInstanceMethodInvocationControl(Object instance, MethodInvocationControl invocationControl) {
-		return instanceMocks.put(instance, invocationControl);
+	public static MethodInvocationControl putInstanceMethodInvocationControl(Object instance, MethodInvocationControl invocationControl) {
+		final State state = currentState();
+		state.addInterceptedType(instance.getClass());
+		if (invocationControl == null) {
+			return state.instanceMocks.remove(instance);
+		}
+		return state.instanceMocks.put(instance, invocationControl);
 	}
 
-	public static synchronized MethodInvocationControl removeInstanceMethodInvocationControl(Class<?> type) {
-		return classMocks.remove(type);
+	public static MethodInvocationControl removeInstanceMethodInvocationControl(Class<?> type) {
+		return currentState().classMocks.remove(type);
 	}
 
-	public static synchronized NewInvocationControl<?> getNewInstanceControl(Class<?> type) {
-		return newSubstitutions.get(type);
+	public static NewInvocationControl<?> getNewInstanceControl(Class<?> type) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final NewInvocationControl<?> control = scoped.newSubstitutions.get(type);
+			if (control != null) {
+				return control;
+			}
+		}
+		return globalState.newSubstitutions.get(type);
 	}
 
-	public static synchronized NewInvocationControl<?> putNewInstanceControl(Class<?> type, NewInvocationControl<?> control) {
-		return newSubstitutions.put(type, control);
+	public static NewInvocationControl<?> putNewInstanceControl(Class<?> type, NewInvocationControl<?> control) {
+		return put(currentState().newSubstitutions, type, control);
 	}
 
 	/**
@@ -179,8 +193,8 @@ public class MockRepository {
 	 *            The fully qualified class name for a class that should have
 	 *            its static initializers suppressed.
 	 */
-	public static synchronized void addSuppressStaticInitializer(String className) {
-		suppressStaticInitializers.add(className);
+	public static void addSuppressStaticInitializer(String className) {
+		suppressStaticInitializers.put(className, Boolean.TRUE);
 	}
 
 	/**
@@ -191,7 +205,7 @@ public class MockRepository {
 	 *            The fully qualified class name for a class that should no
 	 *            longer have its static initializers suppressed.
 	 */
-	public static synchronized void removeSuppressStaticInitializer(String className) {
+	public static void removeSuppressStaticInitializer(String className) {
 		suppressStaticInitializers.remove(className);
 	}
 
@@ -204,23 +218,36 @@ public class MockRepository {
 	 *            <code>className</code> should have its static initializers
 	 *            suppressed, <code>false</code> otherwise.
 	 */
-	public static synchronized boolean shouldSuppressStaticInitializerFor(String className) {
-		return suppressStaticInitializers.contains(className);
+	public static boolean shouldSuppressStaticInitializerFor(String className) {
+		return suppressStaticInitializers.containsKey(className);
 	}
 
 	/**
 	 * @return All classes that should be automatically replayed or verified.
 	 */
-	public static synchronized Set<Object> getObjectsToAutomaticallyReplayAndVerify() {
-		return Collections.unmodifiableSet(objectsToAutomaticallyReplayAndVerify);
+	public static Set<Object> getObjectsToAutomaticallyReplayAndVerify() {
+		final Set<Object> objects = new IdentityHashSet<Object>();
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			synchronized (scoped.objectsToAutomaticallyReplayAndVerify) {
+				objects.addAll(scoped.objectsToAutomaticallyReplayAndVerify);
+			}
+		}
+		synchronized (globalState.objectsToAutomaticallyReplayAndVerify) {
+			objects.addAll(globalState.objectsToAutomaticallyReplayAndVerify);
+		}
+		return Collections.unmodifiableSet(objects);
 	}
 
 	/**
 	 * Add classes that should be automatically replayed or verified.
 	 */
-	public static synchronized void addObjectsToAutomaticallyReplayAndVerify(Object... objects) {
-		for (Object mock : objects) {
-			objectsToAutomaticallyReplayAndVerify.add(mock);
+	public static void addObjectsToAutomaticallyReplayAndVerify(Object... objects) {
+		final Set<Object> objectsToAutomaticallyReplayAndVerify = currentState().objectsToAutomaticallyReplayAndVerify;
+		synchronized (objectsToAutomaticallyReplayAndVerify) {
+			for (Object mock : objects) {
+				objectsToAutomaticallyReplayAndVerify.add(mock);
+			}
 		}
 	}
 
@@ -235,24 +262,55 @@ public class MockRepository {
 	 * @return The previous object under the specified <tt>key</tt> or
 	 *         <code>null</code>.
 	 */
-	public static synchronized Object putAdditionalState(String key, Object value) {
-		return additionalState.put(key, value);
+	public static Object putAdditionalState(String key, Object value) {
+		return put(currentState().additionalState, key, value);
 	}
 
-	public static synchronized Object removeAdditionalState(String key) {
-		return additionalState.remove(key);
+	/**
+	 * Removes the state from the current test scope or, if not found there,
+	 * from the state shared by threads not in a test scope. State such as
+	 * {@link MockGateway#DONT_MOCK_NEXT_CALL} may have been put before the
+	 * scope began.
+	 */
+	public static Object removeAdditionalState(String key) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final Object value = scoped.additionalState.remove(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		return globalState.additionalState.remove(key);
 	}
 
-	public static synchronized InvocationHandler removeMethodProxy(Method method) {
-		return methodProxies.remove(method);
+	/**
+	 * Removes the method proxy from the current test scope or, if not found
+	 * there, from the state shared by threads not in a test scope.
+	 */
+	public static InvocationHandler removeMethodProxy(Method method) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final InvocationHandler invocationHandler = scoped.putMethodProxy(method, null);
+			if (invocationHandler != null) {
+				return invocationHandler;
+			}
+		}
+		return globalState.putMethodProxy(method, null);
 	}
 
 	/**
 	 * Retrieve state based on the supplied key.
 	 */
 	@SuppressWarnings("unchecked")
-	public static synchronized <T> T getAdditionalState(String key) {
-		return (T) additionalState.get(key);
+	public static <T> T getAdditionalState(String key) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final Object value = scoped.additionalState.get(key);
+			if (value != null) {
+				return (T) value;
+			}
+		}
+		return (T) globalState.additionalState.get(key);
 	}
 
 	/**
@@ -261,8 +319,10 @@ public class MockRepository {
 	 * @param method
 	 *            The method to suppress.
 	 */
-	public static synchronized void addMethodToSuppress(Method method) {
-		suppressMethod.add(method);
+	public static void addMethodToSuppress(Method method) {
+		final State state = currentState();
+		state.addInterceptedType(method.getDeclaringClass());
+		state.addMethodToSuppress(method);
 	}
 
 	/**
@@ -271,8 +331,8 @@ public class MockRepository {
 	 * @param field
 	 *            The field to suppress.
 	 */
-	public static synchronized void addFieldToSuppress(Field field) {
-		suppressField.add(field);
+	public static void addFieldToSuppress(Field field) {
+		currentState().suppressField.put(field, Boolean.TRUE);
 	}
 
 	/**
@@ -282,8 +342,8 @@ public class MockRepository {
 	 *            The fully-qualified name to a type. All fields of this type
 	 *            will be suppressed.
 	 */
-	public static synchronized void addFieldTypeToSuppress(String fieldType) {
-		suppressFieldTypes.add(fieldType);
+	public static void addFieldTypeToSuppress(String fieldType) {
+		currentState().suppressFieldTypes.put(fieldType, Boolean.TRUE);
 	}
 
 	/**
@@ -292,65 +352,85 @@ public class MockRepository {
 	 * @param constructor
 	 *            The constructor to suppress.
 	 */
-	public static synchronized void addConstructorToSuppress(Constructor<?> constructor) {
-		suppressConstructor.add(constructor);
+	public static void addConstructorToSuppress(Constructor<?> constructor) {
+		currentState().suppressConstructor.put(constructor, Boolean.TRUE);
 	}
 
 	/**
 	 * @return <code>true</code> if the <tt>method</tt> should be proxied.
 	 */
-	public static synchronized boolean hasMethodProxy(Method method) {
-		return methodProxies.containsKey(method);
+	public static boolean hasMethodProxy(Method method) {
+		return getMethodProxy(method) != null;
 	}
 
 	/**
 	 * @return <code>true</code> if the <tt>method</tt> should be suppressed.
 	 */
-	public static synchronized boolean shouldSuppressMethod(Method method,
-			Class<?> objectType) throws ClassNotFoundException {
-		for (Method suppressedMethod : suppressMethod) {
-			Class<?> suppressedMethodClass = suppressedMethod
-					.getDeclaringClass();
-			if (suppressedMethodClass.getClass().isAssignableFrom(
-					objectType.getClass())
-					&& suppressedMethod.getName().equals(method.getName())
-					&& ClassLocator.getCallerClass().getName()
-							.equals(suppressedMethodClass.getName())) {
-				return true;
-			}
+	public static boolean shouldSuppressMethod(Method method, Class<?> objectType) {
+		final State scoped = testScopedState.get();
+		final Map<String, Boolean> scopedDeclaringClasses = scoped == null ? null : scoped.suppressMethod.get(method.getName());
+		final Map<String, Boolean> globalDeclaringClasses = globalState.suppressMethod.get(method.getName());
+		if (scopedDeclaringClasses == null && globalDeclaringClasses == null) {
+			return false;
 		}
-		return false;
+		/*
+		 * A method with the same name is suppressed. Only now is it worth
+		 * walking the stack to find out if the call was made from the class
+		 * that declares the suppressed method.
+		 */
+		final String callerClassName = ClassLocator.getCallerClass().getName();
+		return (scopedDeclaringClasses != null && scopedDeclaringClasses.containsKey(callerClassName))
+				|| (globalDeclaringClasses != null && globalDeclaringClasses.containsKey(callerClassName));
 	}
 
 	/**
 	 * @return <code>true</code> if the <tt>field</tt> should be suppressed.
 	 */
-	public static synchronized boolean shouldSuppressField(Field field) {
-		return suppressField.contains(field) || suppressFieldTypes.contains(field.getType().getName());
+	public static boolean shouldSuppressField(Field field) {
+		final State scoped = testScopedState.get();
+		return (scoped != null && scoped.shouldSuppressField(field)) || globalState.shouldSuppressField(field);
+	}
+
+	/**
+	 * @return <code>true</code> if any field or field type is suppressed. When
+	 *         not, field reads don't need to be intercepted at all.
+	 */
+	public static boolean hasFieldSuppressions() {
+		final State scoped = testScopedState.get();
+		return (scoped != null && scoped.hasFieldSuppressions()) || globalState.hasFieldSuppressions();
 	}
 
 	/**
 	 * @return <code>true</code> if the <tt>constructor</tt> should be
 	 *         suppressed.
 	 */
-	public static synchronized boolean shouldSuppressConstructor(Constructor<?> constructor) {
-		return suppressConstructor.contains(constructor);
+	public static boolean shouldSuppressConstructor(Constructor<?> constructor) {
+		final State scoped = testScopedState.get();
+		return (scoped != null && scoped.suppressConstructor.containsKey(constructor))
+				|| globalState.suppressConstructor.containsKey(constructor);
 	}
 
 	/**
 	 * @return <code>true</code> if the <tt>method</tt> has a substitute return
 	 *         value.
 	 */
-	public static synchronized boolean shouldStubMethod(Method method) {
-		return substituteReturnValues.containsKey(method);
+	public static boolean shouldStubMethod(Method method) {
+		final State scoped = testScopedState.get();
+		return (scoped != null && scoped.substituteReturnValues.containsKey(method))
+				|| globalState.substituteReturnValues.containsKey(method);
 	}
 
 	/**
 	 * @return The substitute return value for a particular method, may be
 	 *         <code>null</code>.
 	 */
-	public static synchronized Object getMethodToStub(Method method) {
-		return substituteReturnValues.get(method);
+	public static Object getMethodToStub(Method method) {
+		final State scoped = testScopedState.get();
+		Object value = scoped == null ? null : scoped.substituteReturnValues.get(method);
+		if (value == null) {
+			value = globalState.substituteReturnValues.get(method);
+		}
+		return value == NULL_VALUE ? null : value;
 	}
 
 	/**
@@ -359,15 +439,25 @@ public class MockRepository {
 	 * 
 	 * @return The previous substitute value if any.
 	 */
-	public static synchronized Object putMethodToStub(Method method, Object value) {
-		return substituteReturnValues.put(method, value);
+	public static Object putMethodToStub(Method method, Object value) {
+		final State state = currentState();
+		state.addInterceptedType(method.getDeclaringClass());
+		final Object previous = state.substituteReturnValues.put(method, value == null ? NULL_VALUE : value);
+		return previous == NULL_VALUE ? null : previous;
 	}
 
 	/**
 	 * @return The proxy for a particular method, may be <code>null</code>.
 	 */
-	public static synchronized InvocationHandler getMethodProxy(Method method) {
-		return methodProxies.get(method);
+	public static InvocationHandler getMethodProxy(Method method) {
+		final State scoped = testScopedState.get();
+		if (scoped != null) {
+			final InvocationHandler invocationHandler = scoped.methodProxies.get(method);
+			if (invocationHandler != null) {
+				return invocationHandler;
+			}
+		}
+		return globalState.methodProxies.get(method);
 	}
 
 	/**
@@ -376,15 +466,219 @@ public class MockRepository {
 	 * 
 	 * @return The method proxy if any.
 	 */
-	public static synchronized InvocationHandler putMethodProxy(Method method, InvocationHandler invocationHandler) {
-		return methodProxies.put(method, invocationHandler);
+	public static InvocationHandler putMethodProxy(Method method, InvocationHandler invocationHandler) {
+		final State state = currentState();
+		state.addInterceptedType(method.getDeclaringClass());
+		return state.putMethodProxy(method, invocationHandler);
+	}
+
+	/**
+	 * @param className
+	 *            The name of the class declaring the called method. A name is
+	 *            used rather than the class itself since looking up a class
+	 *            from modified code is much more expensive than the check.
+	 * @return <code>true</code> if a mock, method proxy, method suppression or
+	 *         stub that may intercept calls to methods declared in a class
+	 *         named <code>className</code> has been registered,
+	 *         <code>false</code> otherwise.
+	 */
+	public static boolean hasInterceptions(String className) {
+		final State scoped = testScopedState.get();
+		return (scoped != null && scoped.interceptedTypes.containsKey(className))
+				|| globalState.interceptedTypes.containsKey(className);
 	}
 
     /**
      * Add a {@link Runnable} that will be executed after each test
      * @param runnable
      */
-    public static synchronized void addAfterMethodRunner(Runnable runnable) {
-        afterMethodRunners.add(runnable);
+    public static void addAfterMethodRunner(Runnable runnable) {
+        final Set<Runnable> afterMethodRunners = currentState().afterMethodRunners;
+        synchronized (afterMethodRunners) {
+            afterMethodRunners.add(runnable);
+        }
     }
+
+	private static State currentState() {
+		final State scoped = testScopedState.get();
+		return scoped == null ? globalState : scoped;
+	}
+
+	/**
+	 * Concurrent maps doesn't allow <code>null</code> values so putting
+	 * <code>null</code> removes the mapping instead.
+	 */
+	private static <K, V> V put(ConcurrentMap<K, V> map, K key, V value) {
+		return value == null ? map.remove(key) : map.put(key, value);
+	}
+
+	/**
+	 * The state of the repository, either shared by all threads that are not
+	 * in a test scope or belonging to a single test scope.
+	 */
+	private static class State {
+
+		/*
+		 * Guarded by itself.
+		 */
+		private final Set<Object> objectsToAutomaticallyReplayAndVerify = new IdentityHashSet<Object>();
+
+		private final ConcurrentMap<Class<?>, NewInvocationControl<?>> newSubstitutions = new ConcurrentHashMap<Class<?>, NewInvocationControl<?>>();
+
+		/**
+		 * Holds info about general method invocation mocks for classes.
+		 */
+		private final ConcurrentMap<Class<?>, MethodInvocationControl> classMocks = new ConcurrentHashMap<Class<?>, MethodInvocationControl>();
+
+		/**
+		 * Holds info about general method invocation mocks for instances. The
+		 * mocks are weakly referenced since a mock that is no longer
+		 * reachable will never be invoked again.
+		 */
+		private final ConcurrentIdentityHashMap<Object, MethodInvocationControl> instanceMocks = new ConcurrentIdentityHashMap<Object, MethodInvocationControl>(true);
+
+		/**
+		 * Holds info about which methods that should return a
+		 * substitute/another instance instead of the default instance.
+		 */
+		private final ConcurrentMap<Method, Object> substituteReturnValues = new ConcurrentHashMap<Method, Object>();
+
+		/**
+		 * Holds info about which methods that are proxied. Proxies are
+		 * registered before the test runs but looked up on every call to a
+		 * proxied class, so the map is never modified. It's replaced by a
+		 * modified copy, guarded by methodProxiesLock, instead.
+		 */
+		private volatile Map<Method, InvocationHandler> methodProxies = Collections.emptyMap();
+
+		private final Object methodProxiesLock = new Object();
+
+		/**
+		 * Sometimes mock frameworks needs to store additional state. They can
+		 * do this using this key/value based approach.
+		 */
+		private final ConcurrentMap<String, Object> additionalState = new ConcurrentHashMap<String, Object>();
+
+		/**
+		 * Set of constructors that should be suppressed.
+		 */
+		private final ConcurrentMap<Constructor<?>, Boolean> suppressConstructor = new ConcurrentHashMap<Constructor<?>, Boolean>();
+
+		/**
+		 * The methods that should be suppressed. Indexed by method name and
+		 * then by the name of the declaring class so that the common case,
+		 * a call to a method that isn't suppressed, is answered without
+		 * walking the stack.
+		 */
+		private final ConcurrentMap<String, ConcurrentMap<String, Boolean>> suppressMethod = new ConcurrentHashMap<String, ConcurrentMap<String, Boolean>>();
+
+		/**
+		 * Set of fields that should be suppressed.
+		 */
+		private final ConcurrentMap<Field, Boolean> suppressField = new ConcurrentHashMap<Field, Boolean>();
+
+		/**
+		 * Set of field types that should always be suppressed regardless of
+		 * instance.
+		 */
+		private final ConcurrentMap<String, Boolean> suppressFieldTypes = new ConcurrentHashMap<String, Boolean>();
+
+		/**
+		 * Set of runnables that will be executed after the test (method) is
+		 * completed. Guarded by itself.
+		 */
+		private final Set<Runnable> afterMethodRunners = new HashSet<Runnable>();
+
+		/**
+		 * Classes for which a mock, method proxy, method suppression or stub
+		 * that may intercept a method call has been registered. The super
+		 * classes and interfaces of such classes are included since a method
+		 * call on e.g. a mocked instance may be handled by a method declared
+		 * in a super type. Instrumented methods (and call sites to system
+		 * classes) of classes not in this map don't need to call the
+		 * {@link MockGateway}. Only reset when the state is cleared to keep
+		 * the check conservative. Keyed by class name, a class with the same
+		 * name loaded by another class loader only means that its calls go
+		 * through the gateway.
+		 */
+		private final ConcurrentMap<String, Boolean> interceptedTypes = new ConcurrentHashMap<String, Boolean>();
+
+		void clear() {
+			newSubstitutions.clear();
+			classMocks.clear();
+			instanceMocks.clear();
+			synchronized (objectsToAutomaticallyReplayAndVerify) {
+				objectsToAutomaticallyReplayAndVerify.clear();
+			}
+			additionalState.clear();
+			suppressConstructor.clear();
+			suppressMethod.clear();
+			substituteReturnValues.clear();
+			suppressField.clear();
+			suppressFieldTypes.clear();
+			synchronized (methodProxiesLock) {
+				methodProxies = Collections.emptyMap();
+			}
+			interceptedTypes.clear();
+			final List<Runnable> runners;
+			synchronized (afterMethodRunners) {
+				runners = new ArrayList<Runnable>(afterMethodRunners);
+				afterMethodRunners.clear();
+			}
+			for (Runnable runnable : runners) {
+				runnable.run();
+			}
+		}
+
+		/*
+		 * Removes the proxy of method if invocationHandler is null.
+		 */
+		InvocationHandler putMethodProxy(Method method, InvocationHandler invocationHandler) {
+			synchronized (methodProxiesLock) {
+				final Map<Method, InvocationHandler> copy = new HashMap<Method, InvocationHandler>(methodProxies);
+				final InvocationHandler previous = invocationHandler == null ? copy.remove(method) : copy.put(method, invocationHandler);
+				methodProxies = Collections.unmodifiableMap(copy);
+				return previous;
+			}
+		}
+
+		void addInterceptedType(Class<?> type) {
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				addInterceptedTypeAndInterfaces(current);
+			}
+		}
+
+		/*
+		 * Interfaces are included since a call to e.g. a system class is
+		 * intercepted at the call site, where the method may be declared by
+		 * an interface.
+		 */
+		private void addInterceptedTypeAndInterfaces(Class<?> type) {
+			if (interceptedTypes.put(type.getName(), Boolean.TRUE) == null) {
+				for (Class<?> anInterface : type.getInterfaces()) {
+					addInterceptedTypeAndInterfaces(anInterface);
+				}
+			}
+		}
+
+		void addMethodToSuppress(Method method) {
+			ConcurrentMap<String, Boolean> declaringClasses = suppressMethod.get(method.getName());
+			if (declaringClasses == null) {
+				declaringClasses = new ConcurrentHashMap<String, Boolean>();
+				final ConcurrentMap<String, Boolean> existing = suppressMethod.putIfAbsent(method.getName(), declaringClasses);
+				if (existing != null) {
+					declaringClasses = existing;
+				}
+			}
+			declaringClasses.put(method.getDeclaringClass().getName(), Boolean.TRUE);
+		}
+
+		boolean shouldSuppressField(Field field) {
+			return suppressField.containsKey(field) || suppressFieldTypes.containsKey(field.getType().getName());
+		}
+
+		boolean hasFieldSuppressions() {
+			return !suppressField.isEmpty() || !suppressFieldTypes.isEmpty();
+		}
+	}
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the methods that the {@link MockGateway} has resolved for a call
+ * site. A call site is identified by a constant generated by the transformer
+ * (the method name followed by the method descriptor, e.g.
+ * <code>myMethod(ILjava/lang/String;)V</code>) so a cached method can be
+ * found without creating any objects. The resolved method also depends on the
+ * runtime type of the instance that the method is invoked on, so methods are
+ * cached per type.
+ * <p>
+ * The fields looked up by name when intercepting field reads are cached the
+ * same way, keyed by the class in which the field is read.
+ * <p>
+ * Each mock class loader holds its own cache which means that the cache (and
+ * the classes it refers to) can be garbage collected together with the class
+ * loader.
+ */
+public class ResolvedMethodCache {
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Method>> methods = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Method>>();
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Field>> fields = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Field>>();
+
+    /**
+     * @return The method resolved for the call site with id
+     *         <code>callSiteId</code> when invoked on an object of type
+     *         <code>type</code> or <code>null</code> if not yet resolved.
+     */
+    public Method get(Class<?> type, String callSiteId) {
+        final ConcurrentMap<String, Method> methodsForType = methods.get(type);
+        return methodsForType == null ? null : methodsForType.get(callSiteId);
+    }
+
+    public void put(Class<?> type, String callSiteId, Method method) {
+        getOrCreate(methods, type).put(callSiteId, method);
+    }
+
+    /**
+     * @return The field named <code>fieldName</code> as seen from
+     *         <code>type</code> or <code>null</code> if not yet resolved.
+     */
+    public Field getField(Class<?> type, String fieldName) {
+        final ConcurrentMap<String, Field> fieldsForType = fields.get(type);
+        return fieldsForType == null ? null : fieldsForType.get(fieldName);
+    }
+
+    public void putField(Class<?> type, String fieldName, Field field) {
+        getOrCreate(fields, type).put(fieldName, field);
+    }
+
+    public void clear() {
+        methods.clear();
+        fields.clear();
+    }
+
+    private static <T> ConcurrentMap<String, T> getOrCreate(ConcurrentMap<Class<?>, ConcurrentMap<String, T>> members, Class<?> type) {
+        ConcurrentMap<String, T> membersForType = members.get(type);
+        if (membersForType == null) {
+            membersForType = new ConcurrentHashMap<String, T>();
+            final ConcurrentMap<String, T> existing = members.putIfAbsent(type, membersForType);
+            if (existing != null) {
+                membersForType = existing;
+            }
+        }
+        return membersForType;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of wildcard patterns (see {@link WildcardMatcher}) compiled into a
+ * prefix tree so that a text can be matched against all patterns in a single
+ * pass without allocating any memory. This is used when deciding whether a
+ * class should be deferred, modified or loaded unmodified since that's done
+ * for every class that is loaded.
+ * <p>
+ * Exact patterns (<code>org.myapp.MyClass</code>) and prefix patterns (
+ * <code>org.myapp.*</code>) are answered by the tree alone. Other patterns
+ * (e.g. <code>*.MyClass</code>) are stored at the tree node of the text
+ * before their first wildcard and only the remainder is matched once a text
+ * reaches that node.
+ * <p>
+ * Instances are immutable and thus thread-safe.
+ */
+public class WildcardPatternSet {
+
+    private static final char WILDCARD = '*';
+
+    private static final WildcardPatternSet EMPTY = new WildcardPatternSet(new Node());
+
+    private final Node root;
+
+    private WildcardPatternSet(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compile wildcard patterns into a pattern set.
+     *
+     * @param patterns
+     *            The patterns, may contain the wildcard character '*'
+     *            (asterisk). <code>null</code> patterns are ignored.
+     */
+    public static WildcardPatternSet compile(String... patterns) {
+        return patterns == null ? EMPTY : compile(Arrays.asList(patterns));
+    }
+
+    /**
+     * Compile wildcard patterns into a pattern set.
+     *
+     * @param patterns
+     *            The patterns, may contain the wildcard character '*'
+     *            (asterisk). <code>null</code> patterns are ignored.
+     */
+    public static WildcardPatternSet compile(Iterable<String> patterns) {
+        final Node root = new Node();
+        for (String pattern : patterns) {
+            if (pattern != null) {
+                root.add(pattern);
+            }
+        }
+        return new WildcardPatternSet(root);
+    }
+
+    /**
+     * Compile a pattern set that matches all texts starting with any of the
+     * supplied <code>prefixes</code>. Wildcards in the prefixes are not
+     * supported.
+     */
+    public static WildcardPatternSet compilePrefixes(String... prefixes) {
+        final List<String> patterns = new ArrayList<String>(prefixes.length);
+        for (String prefix : prefixes) {
+            patterns.add(prefix + WILDCARD);
+        }
+        return compile(patterns);
+    }
+
+    /**
+     * @param text
+     *            the text to be tested for matches.
+     * @return <tt>true</tt> if <code>text</code> matches any of the patterns
+     *         in the set, <tt>false</tt> otherwise.
+     */
+    public boolean matches(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("text cannot be null");
+        }
+        final int length = text.length();
+        Node node = root;
+        for (int i = 0; ; i++) {
+            if (node.prefix) {
+                return true;
+            }
+            final String[] patterns = node.patterns;
+            if (patterns != null) {
+                for (String pattern : patterns) {
+                    if (matches(text, i, pattern, i)) {
+                        return true;
+                    }
+                }
+            }
+            if (i == length) {
+                return node.exact;
+            }
+            node = node.child(text.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Matches <code>text</code> from index <code>t</code> against
+     * <code>pattern</code> from index <code>p</code> by backtracking to the
+     * last wildcard on mismatch. Runs in constant space.
+     */
+    private static boolean matches(String text, int t, String pattern, int p) {
+        final int textLength = text.length();
+        final int patternLength = pattern.length();
+        int lastWildcard = -1;
+        int textAtLastWildcard = 0;
+        while (t < textLength) {
+            if (p < patternLength && pattern.charAt(p) == WILDCARD) {
+                lastWildcard = p++;
+                textAtLastWildcard = t;
+            } else if (p < patternLength && pattern.charAt(p) == text.charAt(t)) {
+                p++;
+                t++;
+            } else if (lastWildcard != -1) {
+                p = lastWildcard + 1;
+                t = ++textAtLastWildcard;
+            } else {
+                return false;
+            }
+        }
+        while (p < patternLength && pattern.charAt(p) == WILDCARD) {
+            p++;
+        }
+        return p == patternLength;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+
+        /*
+         * A pattern ends here, i.e. the text from the root to this node
+         * matches.
+         */
+        private boolean exact;
+
+        /*
+         * A pattern that ends with wildcards ends here, i.e. all texts that
+         * reach this node match.
+         */
+        private boolean prefix;
+
+        /*
+         * Patterns whose text before the first wildcard ends here but that
+         * contain other characters after it.
+         */
+        private String[] patterns;
+
+        Node child(char key) {
+            final char[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void add(String pattern) {
+            final int firstWildcard = pattern.indexOf(WILDCARD);
+            final int literalLength = firstWildcard == -1 ? pattern.length() : firstWildcard;
+            Node node = this;
+            for (int i = 0; i < literalLength; i++) {
+                node = node.getOrCreateChild(pattern.charAt(i));
+            }
+            if (firstWildcard == -1) {
+                node.exact = true;
+            } else if (isOnlyWildcards(pattern, firstWildcard)) {
+                node.prefix = true;
+            } else {
+                node.addPattern(pattern);
+            }
+        }
+
+        private Node getOrCreateChild(char key) {
+            Node child = child(key);
+            if (child == null) {
+                child = new Node();
+                final int length = keys.length;
+                final char[] newKeys = new char[length + 1];
+                final Node[] newChildren = new Node[length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, length);
+                System.arraycopy(children, 0, newChildren, 0, length);
+                newKeys[length] = key;
+                newChildren[length] = child;
+                keys = newKeys;
+                children = newChildren;
+            }
+            return child;
+        }
+
+        private void addPattern(String pattern) {
+            if (patterns == null) {
+                patterns = new String[] { pattern };
+            } else {
+                final String[] newPatterns = new String[patterns.length + 1];
+                System.arraycopy(patterns, 0, newPatterns, 0, patterns.length);
+                newPatterns[patterns.length] = pattern;
+                patterns = newPatterns;
+            }
+        }
+
+        private static boolean isOnlyWildcards(String pattern, int from) {
+            for (int i = from; i < pattern.length(); i++) {
+                if (pattern.charAt(i) != WILDCARD) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
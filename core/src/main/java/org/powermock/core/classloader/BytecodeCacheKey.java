@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the content addressed keys used by a {@link ClassBytecodeCache}. A
+ * key is a digest of the class name, the byte-code of the class before it was
+ * transformed and a description of the transformation (the transformer chain
+ * and any setting that affects what the transformers produce). Two loaders
+ * that would produce the same byte-code for a class thus create the same key.
+ */
+public class BytecodeCacheKey {
+
+    /**
+     * Bump this whenever the layout of the key changes.
+     */
+    private static final String KEY_FORMAT_VERSION = "1";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Map<Class<?>, String> codeIdentities = new ConcurrentHashMap<Class<?>, String>();
+
+    private final MessageDigest digest;
+
+    public BytecodeCacheKey(String className) {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("PowerMock internal error: SHA-1 is not supported by this JVM.", e);
+        }
+        add(KEY_FORMAT_VERSION);
+        add(className);
+    }
+
+    /**
+     * Add byte-code, for example the original byte-code of the class, to the
+     * key.
+     */
+    public BytecodeCacheKey add(byte[] bytes) {
+        digest.update(bytes);
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Add a setting that affects the result of the transformation to the key.
+     */
+    public BytecodeCacheKey add(String setting) {
+        try {
+            digest.update(String.valueOf(setting).getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Add the identity of the code in <code>type</code> to the key, i.e. the
+     * name and a digest of the byte-code of the class. This makes sure that
+     * cached entries are not reused when the implementation of for example a
+     * transformer changes.
+     */
+    public BytecodeCacheKey addCodeOf(Class<?> type) {
+        String identity = codeIdentities.get(type);
+        if (identity == null) {
+            identity = type.getName() + "@" + digestOfClassFile(type);
+            codeIdentities.put(type, identity);
+        }
+        return add(identity);
+    }
+
+    /**
+     * @return The key as a hexadecimal string. The key can no longer be
+     *         modified after this method has been called.
+     */
+    public String toKey() {
+        final byte[] bytes = digest.digest();
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static String digestOfClassFile(Class<?> type) {
+        final String resourceName = type.getName().replace('.', '/') + ".class";
+        final ClassLoader classLoader = type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader();
+        final InputStream in = classLoader.getResourceAsStream(resourceName);
+        if (in == null) {
+            return "unknown";
+        }
+        try {
+            return new BytecodeCacheKey(type.getName()).add(readFully(in)).toKey();
+        } catch (IOException e) {
+            return "unknown";
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+/**
+ * A store of byte-code that has already been produced by a
+ * {@link MockClassLoader}. Entries are looked up by a key created by
+ * {@link BytecodeCacheKey} so that the same key always maps to the same
+ * byte-code, regardless of which class loader created it.
+ */
+public interface ClassBytecodeCache {
+
+    /**
+     * @param key
+     *            The key created by {@link BytecodeCacheKey}.
+     * @return The byte-code stored for <code>key</code> or <code>null</code>
+     *         if no byte-code is stored for the key.
+     */
+    byte[] get(String key);
+
+    /**
+     * Store the byte-code for a key.
+     * 
+     * @param key
+     *            The key created by {@link BytecodeCacheKey}.
+     * @param bytecode
+     *            The byte-code to store.
+     */
+    void put(String key, byte[] bytecode);
+}
@@ -15,36 +15,71 @@
  */
 package org.powermock.core.classloader;
 
-import org.powermock.core.WildcardMatcher;
+import org.powermock.core.WildcardPatternSet;
 import org.powermock.reflect.Whitebox;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Defers classloading of system classes to a delegate.
+ * <p>
+ * The class loader is parallel capable (on Java 7 and later), i.e. different
+ * classes may be loaded by different threads at the same time. Loading of a
+ * particular class is guarded by a lock per class name.
  * 
  * @author Johan Haleby
  * @author Jan Kronquist
  */
 public abstract class DeferSupportingClassLoader extends ClassLoader {
-    private Map<String, Class<?>> classes;
 
-    String deferPackages[];
+    static {
+        /*
+         * registerAsParallelCapable is caller sensitive so it must be invoked
+         * from the class that should be registered.
+         */
+        final Method registerAsParallelCapable = getRegisterAsParallelCapableMethod();
+        if (registerAsParallelCapable != null) {
+            try {
+                registerAsParallelCapable.invoke(null);
+            } catch (Exception e) {
+                // Not parallel capable, the JVM will lock on the class loader instead
+            }
+        }
+    }
+
+    private final ConcurrentMap<String, Class<?>> classes;
+
+    private final ConcurrentMap<String, Object> classLoadingLocks;
+
+    volatile String deferPackages[];
+
+    /*
+     * The deferPackages compiled into a pattern set, compiled again whenever
+     * packages are added. All lookups use this set.
+     */
+    private volatile WildcardPatternSet deferPackagePatterns;
 
     ClassLoader deferTo;
 
-    public void addIgnorePackage(String... packagesToIgnore) {
+    /*
+     * Synchronized so that packages added by different threads at the same
+     * time aren't lost and deferPackages and deferPackagePatterns are
+     * replaced in the same step.
+     */
+    public synchronized void addIgnorePackage(String... packagesToIgnore) {
         if (packagesToIgnore != null && packagesToIgnore.length > 0) {
             final int previousLength = deferPackages.length;
             String[] newDeferPackages = new String[previousLength + packagesToIgnore.length];
             System.arraycopy(deferPackages, 0, newDeferPackages, 0, previousLength);
             System.arraycopy(packagesToIgnore, 0, newDeferPackages, previousLength, packagesToIgnore.length);
             deferPackages = newDeferPackages;
+            deferPackagePatterns = WildcardPatternSet.compile(newDeferPackages);
         }
     }
 
@@ -54,62 +89,75 @@ public abstract class DeferSupportingClassLoader extends ClassLoader {
         } else {
             deferTo = classloader;
         }
-        classes = new HashMap<String, Class<?>>();
+        classes = new ConcurrentHashMap<String, Class<?>>();
+        classLoadingLocks = new ConcurrentHashMap<String, Object>();
         this.deferPackages = deferPackages;
+        this.deferPackagePatterns = WildcardPatternSet.compile(deferPackages);
     }
 
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
-        Class<?> clazz = null;
-        if ((clazz = (Class<?>) classes.get(name)) == null) {
-            final boolean shouldDefer = shouldDefer(deferPackages, name);
-            if (shouldDefer) {
-                clazz = deferTo.loadClass(name);
-            } else {
-                clazz = loadModifiedClass(name);
-            }
-            if (resolve) {
-                resolveClass(clazz);
+        Class<?> clazz = classes.get(name);
+        if (clazz == null) {
+            synchronized (getClassLoadingLock(name)) {
+                clazz = classes.get(name);
+                if (clazz == null) {
+                    final boolean shouldDefer = shouldDefer(deferPackagePatterns, name);
+                    if (shouldDefer) {
+                        clazz = deferTo.loadClass(name);
+                    } else {
+                        clazz = loadModifiedClass(name);
+                    }
+                    if (clazz == null) {
+                        return null;
+                    }
+                    classes.put(name, clazz);
+                    /*
+                     * Threads that arrive from now on find the class without
+                     * locking, threads already waiting for the lock find it
+                     * once they get it.
+                     */
+                    classLoadingLocks.remove(name);
+                }
             }
         }
-
-        classes.put(name, clazz);
+        if (resolve) {
+            resolveClass(clazz);
+        }
         return clazz;
     }
 
-    protected boolean shouldDefer(String[] packages, String name) {
-        for (String packageToCheck : packages) {
-            if (deferConditionMatches(name, packageToCheck)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * @return The object to lock on while loading the class with name
+     *         <code>className</code>.
+     */
+    protected Object getClassLoadingLock(String className) {
+        final Object lock = new Object();
+        final Object existingLock = classLoadingLocks.putIfAbsent(className, lock);
+        return existingLock == null ? lock : existingLock;
     }
 
-    private boolean deferConditionMatches(String name, String packageName) {
-        final boolean wildcardMatch = WildcardMatcher.matches(name, packageName);
-        return wildcardMatch && !(shouldLoadUnmodifiedClass(name) || wildcardMatch && shouldModifyClass(name));
+    /**
+     * @return The <code>ClassLoader.registerAsParallelCapable()</code> method
+     *         or <code>null</code> if running on a JVM older than Java 7.
+     */
+    static Method getRegisterAsParallelCapableMethod() {
+        try {
+            return ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
     }
 
-    protected boolean shouldIgnore(Iterable<String> packages, String name) {
-        synchronized (packages) {
-            for (String ignore : packages) {
-                if (WildcardMatcher.matches(ignore, name)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    protected boolean shouldDefer(WildcardPatternSet packages, String name) {
+        return packages.matches(name) && !(shouldLoadUnmodifiedClass(name) || shouldModifyClass(name));
     }
 
-    protected boolean shouldIgnore(String[] packages, String name) {
-        synchronized (packages) {
-            for (String ignore : packages) {
-                if (WildcardMatcher.matches(name, ignore)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    /**
+     * @return <code>true</code> if <code>name</code> is in one of the
+     *         {@link #deferPackages}.
+     */
+    protected boolean shouldIgnore(String name) {
+        return deferPackagePatterns.matches(name);
     }
 
     /**
@@ -152,10 +200,6 @@ public abstract class DeferSupportingClassLoader extends ClassLoader {
     		return super.getResources(name);
     }
 
-    protected boolean shouldModify(Iterable<String> packages, String name) {
-        return !shouldIgnore(packages, name);
-    }
-
     protected abstract Class<?> loadModifiedClass(String s) throws ClassFormatError, ClassNotFoundException;
 
     protected abstract boolean shouldModifyClass(String s);
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link ClassBytecodeCache} that stores byte-code in a directory on disk so
+ * that it survives between JVM's. Each entry is stored in its own file named
+ * after the key. Since the keys are content addressed an entry never needs to
+ * be invalidated, stale entries are simply never looked up again and the
+ * directory can be deleted at any time.
+ * <p>
+ * The cache is enabled by setting the system property
+ * {@value #CACHE_DIRECTORY_PROPERTY} to the directory to use.
+ */
+public class DiskClassBytecodeCache implements ClassBytecodeCache {
+
+    /**
+     * The system property that enables the disk cache. The value is the
+     * directory where the byte-code is stored.
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY = "powermock.bytecode.cache.dir";
+
+    private static final String FILE_SUFFIX = ".class";
+
+    private final File directory;
+
+    public DiskClassBytecodeCache(File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return A disk cache in the directory specified by the
+     *         {@value #CACHE_DIRECTORY_PROPERTY} system property or
+     *         <code>null</code> if the property is not set.
+     */
+    public static DiskClassBytecodeCache fromSystemProperty() {
+        final String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if (directory == null || directory.trim().length() == 0) {
+            return null;
+        }
+        return new DiskClassBytecodeCache(new File(directory.trim()));
+    }
+
+    public byte[] get(String key) {
+        final File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            return BytecodeCacheKey.readFully(in);
+        } catch (IOException e) {
+            // A corrupt or concurrently removed entry is treated as a miss
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    public void put(String key, byte[] bytecode) {
+        final File file = fileFor(key);
+        if (file.isFile()) {
+            return;
+        }
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            return;
+        }
+        /*
+         * Write to a temporary file and rename it so that other JVM's sharing
+         * the same directory (e.g. forked Surefire processes) never see a
+         * partially written entry.
+         */
+        File temporaryFile = null;
+        OutputStream out = null;
+        try {
+            temporaryFile = File.createTempFile(key, ".tmp", parent);
+            out = new FileOutputStream(temporaryFile);
+            out.write(bytecode);
+            out.close();
+            out = null;
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization so failing to write is fine
+            if (temporaryFile != null) {
+                temporaryFile.delete();
+            }
+        } finally {
+            close(out);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private File fileFor(String key) {
+        // Spread the entries over sub directories to keep each directory small
+        return new File(new File(directory, key.substring(0, 2)), key + FILE_SUFFIX);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ClassBytecodeCache} that keeps byte-code in memory. A single
+ * {@link #getShared() shared} instance is used by all mock class loaders in
+ * the JVM so that a class that is prepared for test by many test classes only
+ * needs to be transformed once. The cache is bounded by the total size of the
+ * byte-code it holds, the least recently used entries are evicted first.
+ * <p>
+ * The size of the shared cache (in bytes) can be configured using the system
+ * property {@value #MAX_SIZE_PROPERTY}, setting it to <code>0</code> disables
+ * the shared cache.
+ */
+public class MemoryClassBytecodeCache implements ClassBytecodeCache {
+
+    /**
+     * The system property that configures the maximum size in bytes of the
+     * shared cache.
+     */
+    public static final String MAX_SIZE_PROPERTY = "powermock.bytecode.cache.memory.size";
+
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024L * 1024L;
+
+    private static final MemoryClassBytecodeCache shared = new MemoryClassBytecodeCache(getMaxSizeFromSystemProperty());
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize
+     *            The maximum number of bytes of byte-code to keep in memory.
+     */
+    public MemoryClassBytecodeCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The cache shared by all mock class loaders in the JVM or
+     *         <code>null</code> if it's disabled.
+     */
+    public static MemoryClassBytecodeCache getShared() {
+        return shared.maxSize > 0 ? shared : null;
+    }
+
+    /**
+     * The returned byte-code is shared with other users of the cache and must
+     * not be modified.
+     */
+    public byte[] get(String key) {
+        final byte[] bytecode;
+        synchronized (entries) {
+            bytecode = entries.get(key);
+        }
+        if (bytecode == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return bytecode;
+    }
+
+    public void put(String key, byte[] bytecode) {
+        if (bytecode.length > maxSize) {
+            return;
+        }
+        synchronized (entries) {
+            final byte[] previous = entries.put(key, bytecode);
+            if (previous != null) {
+                size -= previous.length;
+            }
+            size += bytecode.length;
+            final Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The number of lookups that found byte-code in the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that didn't find byte-code in the cache.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The total number of bytes of byte-code currently held.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[hits=" + getHitCount() + ", misses=" + getMissCount() + ", size=" + getSize() + "]";
+    }
+
+    private static long getMaxSizeFromSystemProperty() {
+        final String maxSize = System.getProperty(MAX_SIZE_PROPERTY);
+        if (maxSize == null) {
+            return DEFAULT_MAX_SIZE;
+        }
+        try {
+            return Long.parseLong(maxSize.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The system property " + MAX_SIZE_PROPERTY + " must be a number of bytes but was " + maxSize
+                    + ".", e);
+        }
+    }
+}
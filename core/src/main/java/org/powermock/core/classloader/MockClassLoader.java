@@ -19,16 +19,23 @@ import javassist.ClassClassPath;
 import javassist.ClassPool;
 import javassist.CtClass;
 import org.powermock.core.ClassReplicaCreator;
-import org.powermock.core.WildcardMatcher;
+import org.powermock.core.MockRepository;
+import org.powermock.core.ResolvedMethodCache;
+import org.powermock.core.WildcardPatternSet;
 import org.powermock.core.classloader.annotations.UseClassPathAdjuster;
 import org.powermock.core.spi.PowerMockPolicy;
 import org.powermock.core.spi.support.InvocationSubstitute;
 import org.powermock.core.transformers.MockTransformer;
+import org.powermock.core.transformers.impl.MainMockTransformer;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Mock all classes except system classes.
@@ -44,6 +51,17 @@ import java.util.Set;
  */
 public final class MockClassLoader extends DeferSupportingClassLoader {
 
+    static {
+        final Method registerAsParallelCapable = getRegisterAsParallelCapableMethod();
+        if (registerAsParallelCapable != null) {
+            try {
+                registerAsParallelCapable.invoke(null);
+            } catch (Exception e) {
+                // Not parallel capable, the JVM will lock on the class loader instead
+            }
+        }
+    }
+
     /**
      * Pass this string to the constructor to indicate that all classes should
      * be modified.
@@ -53,20 +71,33 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
     private static final String CGLIB_ENHANCER = "net.sf.cglib.proxy.Enhancer$EnhancerKey$$KeyFactoryByCGLIB$$";
     private static final String CGLIB_METHOD_WRAPPER = "net.sf.cglib.core.MethodWrapper$MethodWrapperKey$$KeyFactoryByCGLIB";
 
-    private List<MockTransformer> mockTransformerChain;
+    private volatile List<MockTransformer> mockTransformerChain;
+
+    private final Set<String> modify = new CopyOnWriteArraySet<String>();
+
+    /*
+     * The classes in modify compiled into a pattern set, updated whenever
+     * modify changes.
+     */
+    private volatile WildcardPatternSet modifyPatterns = WildcardPatternSet.compile();
 
-    private Set<String> modify = Collections.synchronizedSet(new HashSet<String>());
+    /*
+     * The system classes whose methods should be intercepted when called from
+     * a modified class. When empty calls to all system classes are
+     * intercepted.
+     */
+    private final Set<String> systemClassesToIntercept = new CopyOnWriteArraySet<String>();
 
     /*
      * Classes not deferred but loaded by the mock class loader but they're not
      * modified.
      */
-    private final String[] packagesToLoadButNotModify = new String[]{"org.junit.", "junit.", "org.easymock.", "net.sf.cglib.", "javassist.",
-            "org.powermock.modules.junit4.internal.", "org.powermock.modules.junit4.legacy.internal.", "org.powermock.modules.junit3.internal.",
-            "org.powermock"};
+    private static final WildcardPatternSet packagesToLoadButNotModify = WildcardPatternSet.compilePrefixes("org.junit.", "junit.",
+            "org.easymock.", "net.sf.cglib.", "javassist.", "org.powermock.modules.junit4.internal.",
+            "org.powermock.modules.junit4.legacy.internal.", "org.powermock.modules.junit3.internal.", "org.powermock");
 
-    private final String[] specificClassesToLoadButNotModify = new String[]{InvocationSubstitute.class.getName(), PowerMockPolicy.class.getName(),
-            ClassReplicaCreator.class.getName()};
+    private static final WildcardPatternSet specificClassesToLoadButNotModify = WildcardPatternSet.compile(InvocationSubstitute.class.getName(),
+            PowerMockPolicy.class.getName(), ClassReplicaCreator.class.getName());
 
     /*
      * Classes that should always be deferred regardless of what the user
@@ -76,7 +107,21 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
             "junit.*", "org.pitest.*", "org.powermock.modules.junit4.common.internal.*", "org.powermock.modules.junit3.internal.PowerMockJUnit3RunnerDelegate*",
             "org.powermock.core*", "org.jacoco.agent.rt.*"};
 
-    private ClassPool classPool = new ClassPool();
+    private static final WildcardPatternSet packagesToBeDeferredPatterns = WildcardPatternSet.compile(packagesToBeDeferred);
+
+    private final ClassPool classPool = new ClassPool();
+
+    /*
+     * Byte-code produced by this (or any earlier) mock class loader, null if
+     * caching is disabled.
+     */
+    private volatile ClassBytecodeCache bytecodeCache = TieredClassBytecodeCache.createDefault();
+
+    /*
+     * Methods resolved by the MockGateway for classes loaded by this class
+     * loader.
+     */
+    private final ResolvedMethodCache resolvedMethodCache = new ResolvedMethodCache();
 
     /**
      * Creates a new instance of the {@link MockClassLoader} based on the
@@ -159,13 +204,41 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
      *                to the list of classes that will be byte-code modified to
      *                enable testability.
      */
-    public void addClassesToModify(String... classes) {
+    public synchronized void addClassesToModify(String... classes) {
         if (classes != null) {
             for (String clazz : classes) {
-                if (!shouldDefer(packagesToBeDeferred, clazz)) {
+                if (!shouldDefer(packagesToBeDeferredPatterns, clazz)) {
                     modify.add(clazz);
                 }
             }
+            modifyPatterns = WildcardPatternSet.compile(modify);
+        }
+    }
+
+    /**
+     * Add system classes (i.e. classes in the <code>java</code> packages)
+     * whose methods should be intercepted when they're called from a modified
+     * class. The system classes themselves can never be modified. By default,
+     * when no system classes have been added, calls to all system classes are
+     * intercepted. Once a system class has been added only calls to the added
+     * system classes are intercepted and all other calls are left untouched.
+     * <p>
+     * Narrowing the interception is opt-in, test classes do it with the
+     * {@link org.powermock.core.classloader.annotations.InterceptSystemClasses}
+     * annotation. System classes passed to
+     * {@link #addClassesToModify(String...)} (e.g. from
+     * <code>@PrepareForTest</code>) are not added here since tests may rely
+     * on calls to other system classes being intercepted as well.
+     *
+     * @param classes The fully qualified names of the system classes, may
+     *                contain wildcards (e.g. <code>java.net.*</code>).
+     */
+    public void addSystemClassesToIntercept(String... classes) {
+        if (classes != null) {
+            for (String clazz : classes) {
+                systemClassesToIntercept.add(clazz);
+            }
+            configureTransformers();
         }
     }
 
@@ -182,16 +255,15 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
     }
 
     private boolean shouldModify(String className) {
-        final boolean shouldIgnoreClass = shouldIgnore(deferPackages, className);
         final boolean shouldModifyAll = shouldModifyAll();
         if (shouldModifyAll) {
-            return !shouldIgnoreClass;
+            return !shouldIgnore(className);
         } else {
             /* Never mind if we should ignore the class here since
              * classes added by prepared for test should (i.e. those added in "modify")
              * have precedence over ignored packages.
              */
-            return WildcardMatcher.matchesAny(modify, className);
+            return modifyPatterns.matches(className);
         }
     }
 
@@ -217,11 +289,21 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
              * this behavior.
              */
             if (!name.startsWith(CGLIB_ENHANCER) && !name.startsWith(CGLIB_METHOD_WRAPPER)) {
-                final CtClass ctClass = classPool.get(name);
-                if (ctClass.isFrozen()) {
-                    ctClass.defrost();
+                // The class pool is not thread-safe
+                synchronized (classPool) {
+                    final CtClass ctClass = classPool.get(name);
+                    final String cacheKey = getBytecodeCacheKey(ctClass, false);
+                    bytes = cacheKey == null ? null : bytecodeCache.get(cacheKey);
+                    if (bytes == null) {
+                        if (ctClass.isFrozen()) {
+                            ctClass.defrost();
+                        }
+                        bytes = ctClass.toBytecode();
+                        if (cacheKey != null) {
+                            bytecodeCache.put(cacheKey, bytes);
+                        }
+                    }
                 }
-                bytes = ctClass.toBytecode();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -238,11 +320,26 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
 
         ClassPool.doPruning = false;
         try {
-            type = classPool.get(name);
-            for (MockTransformer transformer : mockTransformerChain) {
-                type = transformer.transform(type);
+            synchronized (classPool) {
+                type = classPool.get(name);
+                final String cacheKey = getBytecodeCacheKey(type, true);
+                clazz = cacheKey == null ? null : bytecodeCache.get(cacheKey);
+                if (clazz == null) {
+                    for (MockTransformer transformer : mockTransformerChain) {
+                        type = transformer.transform(type);
+                    }
+                    clazz = type.toBytecode();
+                    if (cacheKey != null) {
+                        bytecodeCache.put(cacheKey, clazz);
+                    }
+                } else {
+                    for (MockTransformer transformer : mockTransformerChain) {
+                        if (transformer instanceof MainMockTransformer) {
+                            ((MainMockTransformer) transformer).applyChangesToOtherClasses(type);
+                        }
+                    }
+                }
             }
-            clazz = type.toBytecode();
         } catch (Exception e) {
             throw new IllegalStateException("Failed to transform class with name " + name + ". Reason: " + e.getMessage(), e);
         }
@@ -252,6 +349,114 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
 
     public void setMockTransformerChain(List<MockTransformer> mockTransformerChain) {
         this.mockTransformerChain = mockTransformerChain;
+        configureTransformers();
+    }
+
+    private void configureTransformers() {
+        final List<MockTransformer> mockTransformerChain = this.mockTransformerChain;
+        if (mockTransformerChain != null && !systemClassesToIntercept.isEmpty()) {
+            final WildcardPatternSet systemClasses = WildcardPatternSet.compile(systemClassesToIntercept);
+            for (MockTransformer transformer : mockTransformerChain) {
+                if (transformer instanceof MainMockTransformer) {
+                    ((MainMockTransformer) transformer).setSystemClassesToIntercept(systemClasses);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The cache of methods that the
+     *         {@link org.powermock.core.MockGateway} has resolved for classes
+     *         loaded by this class loader.
+     */
+    public ResolvedMethodCache getResolvedMethodCache() {
+        return resolvedMethodCache;
+    }
+
+    /**
+     * Set the cache used to look up byte-code that has already been produced
+     * by a mock class loader. Pass <code>null</code> to disable caching. By
+     * default the cache returned by
+     * {@link TieredClassBytecodeCache#createDefault()} is used.
+     * <p>
+     * Transformed classes are only cached when the transformer chain consists
+     * of {@link MainMockTransformer}s since the transformers are skipped
+     * altogether when the byte-code is found in the cache.
+     */
+    public void setBytecodeCache(ClassBytecodeCache bytecodeCache) {
+        this.bytecodeCache = bytecodeCache;
+    }
+
+    /**
+     * @return The key under which the byte-code of <code>type</code> is stored
+     *         in the {@link #bytecodeCache}, or <code>null</code> if caching
+     *         is disabled.
+     */
+    private String getBytecodeCacheKey(CtClass type, boolean transform) throws Exception {
+        if (bytecodeCache == null) {
+            return null;
+        }
+        if (transform && !isTransformationCacheable()) {
+            return null;
+        }
+        final String name = type.getName();
+        final BytecodeCacheKey key = new BytecodeCacheKey(name).add(getSourceBytecode(type));
+        if (transform) {
+            for (MockTransformer transformer : mockTransformerChain) {
+                key.addCodeOf(transformer.getClass());
+                if (transformer instanceof MainMockTransformer) {
+                    key.add(((MainMockTransformer) transformer).getStrategy().name());
+                }
+            }
+            key.add("suppressStaticInitializer=" + MockRepository.shouldSuppressStaticInitializerFor(name));
+            key.add("systemClassesToIntercept=" + new TreeSet<String>(systemClassesToIntercept));
+        } else {
+            key.add("unmodified");
+        }
+        return key.toKey();
+    }
+
+    /**
+     * On a cache hit the transformers are not run, only the changes that the
+     * {@link MainMockTransformer} makes to other classes are applied again.
+     * The result of other transformers can't be cached since they may have
+     * side effects that would then be skipped.
+     */
+    private boolean isTransformationCacheable() {
+        for (MockTransformer transformer : mockTransformerChain) {
+            if (transformer.getClass() != MainMockTransformer.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The byte-code of <code>type</code> as it looks before it's
+     *         transformed. This is normally the class file on the class path
+     *         but other classes that have already been transformed may have
+     *         modified the class in the class pool (e.g. by adding defer
+     *         constructors).
+     */
+    private byte[] getSourceBytecode(CtClass type) throws Exception {
+        if (!type.isModified()) {
+            final URL url = classPool.find(type.getName());
+            if (url != null) {
+                try {
+                    final InputStream in = url.openStream();
+                    try {
+                        return BytecodeCacheKey.readFully(in);
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    // Not a real location (e.g. a ByteArrayClassPath), use the class pool
+                }
+            }
+        }
+        final byte[] bytes = type.toBytecode();
+        type.defrost();
+        return bytes;
     }
 
     @Override
@@ -261,20 +466,10 @@ public final class MockClassLoader extends DeferSupportingClassLoader {
 
     @Override
     protected boolean shouldLoadUnmodifiedClass(String className) {
-        for (String classNameToLoadButNotModify : specificClassesToLoadButNotModify) {
-            if (className.equals(classNameToLoadButNotModify)) {
-                return true;
-            }
-        }
-        return false;
+        return specificClassesToLoadButNotModify.matches(className);
     }
 
     private boolean shouldLoadModified(String className) {
-        for (String packageToLoadButNotModify : packagesToLoadButNotModify) {
-            if (className.startsWith(packageToLoadButNotModify)) {
-                return true;
-            }
-        }
-        return false;
+        return packagesToLoadButNotModify.matches(className);
     }
 }
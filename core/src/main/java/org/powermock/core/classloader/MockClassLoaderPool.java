@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import org.powermock.core.classloader.annotations.UseClassPathAdjuster;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A pool of mock class loaders that test classes with the same configuration
+ * (the classes to modify, the packages to defer, the system classes to
+ * intercept, the mock policies and the class path adjuster) can share instead of each creating, and transforming
+ * classes in, a mock class loader of their own. The pool is bounded by the
+ * number of class loaders it holds, the least recently used loaders are
+ * evicted first.
+ * <p>
+ * Classes loaded by a pooled class loader are shared by all test classes that
+ * use it, including any static state they have. The {@link #getShared()
+ * shared} pool is therefore disabled by default. It's enabled by setting the
+ * system property {@value #MAX_SIZE_PROPERTY} to the maximum number of class
+ * loaders to keep.
+ */
+public class MockClassLoaderPool {
+
+    /**
+     * The system property that configures the maximum number of class loaders
+     * in the shared pool.
+     */
+    public static final String MAX_SIZE_PROPERTY = "powermock.classloader.pool.size";
+
+    private static final MockClassLoaderPool shared = new MockClassLoaderPool(getMaxSizeFromSystemProperty());
+
+    private final LinkedHashMap<String, MockClassLoader> loaders;
+
+    private final int maxSize;
+
+    /**
+     * @param maxSize
+     *            The maximum number of class loaders to keep in the pool.
+     */
+    public MockClassLoaderPool(final int maxSize) {
+        this.maxSize = maxSize;
+        this.loaders = new LinkedHashMap<String, MockClassLoader>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MockClassLoader> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The pool shared by all test classes in the JVM or
+     *         <code>null</code> if it's disabled.
+     */
+    public static MockClassLoaderPool getShared() {
+        return shared.maxSize > 0 ? shared : null;
+    }
+
+    /**
+     * Create the key of a class loader configuration. The classes to modify,
+     * the packages to defer and the system classes to intercept are sorted (and duplicates removed) so that
+     * the order in which they were specified doesn't matter. The order of the
+     * mock policies is kept since it decides which policy takes precedence.
+     *
+     * @param classesToModify
+     *            The classes that the class loader modifies.
+     * @param packagesToDefer
+     *            The packages that the class loader defers to its parent.
+     * @param systemClassesToIntercept
+     *            The system classes whose calls the class loader intercepts,
+     *            may be <code>null</code> if calls to all system classes are
+     *            intercepted.
+     * @param mockPolicies
+     *            The mock policies used to initialize the class loader.
+     * @param useClassPathAdjuster
+     *            The class path adjuster used by the class loader, may be
+     *            <code>null</code>.
+     */
+    public static String createKey(String[] classesToModify, String[] packagesToDefer, String[] systemClassesToIntercept,
+            Class<?>[] mockPolicies, UseClassPathAdjuster useClassPathAdjuster) {
+        final StringBuilder key = new StringBuilder();
+        key.append("modify=").append(sorted(classesToModify));
+        key.append(";defer=").append(sorted(packagesToDefer));
+        key.append(";intercept=").append(sorted(systemClassesToIntercept));
+        key.append(";policies=[");
+        if (mockPolicies != null) {
+            for (int i = 0; i < mockPolicies.length; i++) {
+                key.append(i == 0 ? "" : ", ").append(mockPolicies[i].getName());
+            }
+        }
+        key.append("];classPathAdjuster=").append(useClassPathAdjuster == null ? null : useClassPathAdjuster.value().getName());
+        return key.toString();
+    }
+
+    /**
+     * @return The class loader stored under <code>key</code> or
+     *         <code>null</code> if there is none.
+     */
+    public MockClassLoader get(String key) {
+        synchronized (loaders) {
+            return loaders.get(key);
+        }
+    }
+
+    /**
+     * Store <code>classLoader</code> under <code>key</code> unless another
+     * class loader has been stored there since it was looked up, for example
+     * by a test suite chunker running in another thread.
+     *
+     * @return The class loader stored under <code>key</code>, i.e. the one
+     *         to use.
+     */
+    public MockClassLoader putIfAbsent(String key, MockClassLoader classLoader) {
+        synchronized (loaders) {
+            final MockClassLoader existing = loaders.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            loaders.put(key, classLoader);
+            return classLoader;
+        }
+    }
+
+    /**
+     * @return The number of class loaders currently held.
+     */
+    public int size() {
+        synchronized (loaders) {
+            return loaders.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (loaders) {
+            loaders.clear();
+        }
+    }
+
+    private static TreeSet<String> sorted(String[] strings) {
+        final TreeSet<String> sorted = new TreeSet<String>();
+        if (strings != null) {
+            for (String string : strings) {
+                if (string != null) {
+                    sorted.add(string);
+                }
+            }
+        }
+        return sorted;
+    }
+
+    private static int getMaxSizeFromSystemProperty() {
+        final String maxSize = System.getProperty(MAX_SIZE_PROPERTY);
+        if (maxSize == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(maxSize.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The system property " + MAX_SIZE_PROPERTY + " must be a number of class loaders but was "
+                    + maxSize + ".", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+/**
+ * A {@link ClassBytecodeCache} that consults a fast cache before a slow one,
+ * for example a {@link MemoryClassBytecodeCache} before a
+ * {@link DiskClassBytecodeCache}. Byte-code found in the slow cache is copied
+ * to the fast cache.
+ */
+public class TieredClassBytecodeCache implements ClassBytecodeCache {
+
+    private final ClassBytecodeCache fast;
+
+    private final ClassBytecodeCache slow;
+
+    public TieredClassBytecodeCache(ClassBytecodeCache fast, ClassBytecodeCache slow) {
+        if (fast == null || slow == null) {
+            throw new IllegalArgumentException("fast and slow cannot be null");
+        }
+        this.fast = fast;
+        this.slow = slow;
+    }
+
+    /**
+     * @return The cache that mock class loaders use unless told otherwise,
+     *         i.e. the {@link MemoryClassBytecodeCache#getShared() shared
+     *         memory cache} and the {@link DiskClassBytecodeCache} if they
+     *         are enabled. Returns <code>null</code> if both are disabled.
+     */
+    public static ClassBytecodeCache createDefault() {
+        final ClassBytecodeCache memoryCache = MemoryClassBytecodeCache.getShared();
+        final ClassBytecodeCache diskCache = DiskClassBytecodeCache.fromSystemProperty();
+        if (memoryCache == null) {
+            return diskCache;
+        } else if (diskCache == null) {
+            return memoryCache;
+        }
+        return new TieredClassBytecodeCache(memoryCache, diskCache);
+    }
+
+    public byte[] get(String key) {
+        byte[] bytecode = fast.get(key);
+        if (bytecode == null) {
+            bytecode = slow.get(key);
+            if (bytecode != null) {
+                fast.put(key, bytecode);
+            }
+        }
+        return bytecode;
+    }
+
+    public void put(String key, byte[] bytecode) {
+        fast.put(key, bytecode);
+        slow.put(key, bytecode);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * This annotation tells PowerMock to only intercept calls to the system
+ * classes (i.e. classes in the <code>java</code> packages) with the names
+ * supplied to {@link #value()} from the classes prepared for test. Calls to
+ * all other system classes are left untouched which makes prepared classes
+ * that do a lot of e.g. string or collection work run a lot faster.
+ * <p>
+ * For example suppose you'd like to mock <tt>System.currentTimeMillis()</tt>
+ * when it's called from "MyClass". Then you do like this:
+ *
+ * <pre>
+ * &#064;InterceptSystemClasses(&quot;java.lang.System&quot;)
+ * &#064;PrepareForTest(MyClass.class)
+ * &#064;RunWith(PowerMockRunner.class)
+ * public class MyTest {
+ * ...
+ * }
+ *
+ * </pre>
+ *
+ * The names may contain wildcards, e.g. <tt>java.net.*</tt>. Without this
+ * annotation calls to all system classes are intercepted.
+ */
+@Target( { ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface InterceptSystemClasses {
+    String[] value();
+}
@@ -23,8 +23,11 @@ import javassist.bytecode.InnerClassesAttribute;
 import javassist.expr.*;
 import org.powermock.core.IndicateReloadClass;
 import org.powermock.core.MockGateway;
+import org.powermock.core.WildcardPatternSet;
 import org.powermock.core.transformers.MockTransformer;
 import org.powermock.core.transformers.TransformStrategy;
+import org.powermock.reflect.internal.TypeUtils;
+import org.powermock.reflect.internal.WhiteboxImpl;
 
 import static org.powermock.core.transformers.TransformStrategy.*;
 
@@ -34,6 +37,12 @@ public class MainMockTransformer implements MockTransformer {
 
     private TransformStrategy strategy;
 
+    /*
+     * The system classes whose methods are intercepted when called from a
+     * transformed class, null to intercept calls to all system classes.
+     */
+    private volatile WildcardPatternSet systemClassesToIntercept;
+
     public MainMockTransformer() {
         this(CLASSLOADER);
     }
@@ -170,7 +179,6 @@ public class MainMockTransformer implements MockTransformer {
         if (!Modifier.isAbstract(method.getModifiers())) {
             // Lookup the method return type
             final CtClass returnTypeAsCtClass = method.getReturnType();
-            final String returnTypeAsString = getReturnTypeAsString(method);
 
             if (Modifier.isNative(method.getModifiers())) {
                 String methodName = method.getName();
@@ -185,8 +193,8 @@ public class MainMockTransformer implements MockTransformer {
                     classOrInstance = "$class";
                 }
                 method.setModifiers(method.getModifiers() - Modifier.NATIVE);
-                String code = "Object value = " + MockGateway.class.getName() + ".methodCall(" + classOrInstance + ", \"" + method.getName()
-                        + "\", $args, $sig, \"" + returnTypeAsString + "\");" + "if (value != " + MockGateway.class.getName() + ".PROCEED) "
+                String code = "Object value = " + getMethodCall(method, classOrInstance) + ";" + getReturnIfSuppressed(returnTypeAsCtClass)
+                        + "if (value != " + MockGateway.class.getName() + ".PROCEED) "
                         + "return " + returnValue + "; " + "throw new java.lang.UnsupportedOperationException(\"" + methodName + " is native\");";
                 method.setBody("{" + code + "}");
                 return;
@@ -199,21 +207,84 @@ public class MainMockTransformer implements MockTransformer {
                 classOrInstance = "$class";
             }
 
-            String code = "Object value = " + MockGateway.class.getName() + ".methodCall(" + classOrInstance + ", \"" + method.getName()
-                    + "\", $args, $sig, \"" + returnTypeAsString + "\");" + "if (value != " + MockGateway.class.getName() + ".PROCEED) " + "return "
-                    + returnValue + "; ";
+            /*
+             * Only call the gateway if something may intercept the call so
+             * that no arguments are boxed when nothing is mocked. The class
+             * name is a constant, $class would look up the class by name in
+             * every call.
+             */
+            String code = "if (" + MockGateway.class.getName() + ".hasInterceptions(\"" + method.getDeclaringClass().getName() + "\")) { "
+                    + "Object value = " + getMethodCall(method, classOrInstance) + ";" + getReturnIfSuppressed(returnTypeAsCtClass)
+                    + "if (value != " + MockGateway.class.getName() + ".PROCEED) " + "return " + returnValue + "; }";
 
             method.insertBefore("{ " + code + "}");
         }
     }
 
-    private String getReturnTypeAsString(final CtMethod method) throws NotFoundException {
-        CtClass returnType = method.getReturnType();
-        String returnTypeAsString = VOID;
-        if (!returnType.equals(CtClass.voidType)) {
-            returnTypeAsString = returnType.getName();
+    /**
+     * @return The call to the {@link MockGateway} for <code>method</code>.
+     *         Methods without parameters, with a single <code>int</code> or
+     *         <code>long</code> parameter or with up to three reference
+     *         parameters use the typed entry points of the gateway which
+     *         don't need <code>$args</code>, i.e. no argument array is
+     *         created and no argument is boxed unless the call is passed on to
+     *         a mock.
+     */
+    private String getMethodCall(final CtMethod method, final String classOrInstance) throws NotFoundException {
+        final CtClass[] parameterTypes = method.getParameterTypes();
+        final String gateway = MockGateway.class.getName();
+        final String callSiteId = "\"" + getCallSiteId(method) + "\")";
+        final String target = classOrInstance + ", \"" + method.getName() + "\", ";
+        if (parameterTypes.length == 0) {
+            return gateway + ".methodCall0(" + target + callSiteId;
+        } else if (parameterTypes.length == 1 && parameterTypes[0] == CtClass.intType) {
+            return gateway + ".methodCallI(" + target + "$1, " + callSiteId;
+        } else if (parameterTypes.length == 1 && parameterTypes[0] == CtClass.longType) {
+            return gateway + ".methodCallJ(" + target + "$1, " + callSiteId;
+        } else if (parameterTypes.length <= 3 && !hasPrimitiveType(parameterTypes)) {
+            final StringBuilder arguments = new StringBuilder();
+            for (int i = 1; i <= parameterTypes.length; i++) {
+                arguments.append('$').append(i).append(", ");
+            }
+            return gateway + ".methodCallObj" + parameterTypes.length + "(" + target + arguments + callSiteId;
         }
-        return returnTypeAsString;
+        return gateway + ".methodCall(" + target + "$args, " + callSiteId;
+    }
+
+    /**
+     * @return Code that returns the default value of the return type if the
+     *         gateway has suppressed the call. The default value is a
+     *         constant in the generated code so it's neither looked up by
+     *         the name of the type nor boxed.
+     */
+    private String getReturnIfSuppressed(final CtClass returnTypeAsCtClass) {
+        return "if (value == " + MockGateway.class.getName() + ".SUPPRESS) " + "return " + getDefaultValue(returnTypeAsCtClass) + "; ";
+    }
+
+    private String getDefaultValue(final CtClass returnTypeAsCtClass) {
+        if (returnTypeAsCtClass.equals(CtClass.voidType)) {
+            return VOID;
+        }
+        return TypeUtils.getDefaultValueAsString(returnTypeAsCtClass.getName());
+    }
+
+    private static boolean hasPrimitiveType(final CtClass[] types) {
+        for (CtClass type : types) {
+            if (type.isPrimitive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The id that the {@link MockGateway} uses to cache the resolved
+     *         method, i.e. the method name followed by the method descriptor.
+     *         It's a constant in the generated code so that the method can be
+     *         looked up without creating any objects.
+     */
+    private String getCallSiteId(final CtMethod method) {
+        return method.getName() + method.getSignature();
     }
 
     /**
@@ -239,6 +310,90 @@ public class MainMockTransformer implements MockTransformer {
         return returnValue;
     }
 
+    public TransformStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Only intercept calls to the supplied system classes, calls to other
+     * system classes are left untouched. By default calls to all system
+     * classes are intercepted.
+     *
+     * @param systemClassesToIntercept The system classes to intercept calls to,
+     *                                 <code>null</code> to intercept calls to
+     *                                 all system classes.
+     */
+    public void setSystemClassesToIntercept(WildcardPatternSet systemClassesToIntercept) {
+        this.systemClassesToIntercept = systemClassesToIntercept;
+    }
+
+    /**
+     * Re-applies the changes that {@link #transform(CtClass)} makes to
+     * <i>other</i> classes in the class pool of <code>clazz</code>, i.e. the
+     * defer constructors added to the super classes. This must be called when
+     * the transformed byte-code of <code>clazz</code> is taken from a cache
+     * instead of being transformed, otherwise the super classes will be
+     * loaded without the constructors that the cached byte-code refers to.
+     *
+     * @param clazz The class whose transformed byte-code was taken from a cache.
+     */
+    public void applyChangesToOtherClasses(final CtClass clazz) throws Exception {
+        if (strategy == CLASSLOADER && !clazz.isInterface()) {
+            final CtClass superclass = clazz.getSuperclass();
+            // Mimics the condition in PowerMockExpressionEditor.edit(ConstructorCall)
+            if (superclass != null && !superclass.getName().startsWith("java.lang") && !superclass.getName().equals(Object.class.getName())) {
+                addNewDeferConstructor(superclass);
+            }
+        }
+    }
+
+    /**
+     * Create a defer constructor in the class which will be called when the
+     * constructor is suppressed.
+     *
+     * @param clazz The class whose super constructor will get a new defer
+     *              constructor if it doesn't already have one.
+     * @throws CannotCompileException If an unexpected compilation error occurs.
+     */
+    private void addNewDeferConstructor(final CtClass clazz) throws CannotCompileException {
+        CtClass superClass = null;
+        try {
+            superClass = clazz.getSuperclass();
+        } catch (NotFoundException e1) {
+            throw new IllegalArgumentException("Internal error: Failed to get superclass for " + clazz.getName()
+                    + " when about to create a new default constructor.");
+        }
+
+        ClassPool classPool = clazz.getClassPool();
+        /*
+         * To make a unique defer constructor we create a new constructor
+         * with one argument (IndicateReloadClass). So we get this class a
+         * Javassist class below.
+         */
+        CtClass constructorType = null;
+        try {
+            constructorType = classPool.get(IndicateReloadClass.class.getName());
+        } catch (NotFoundException e) {
+            throw new IllegalArgumentException("Internal error: failed to get the " + IndicateReloadClass.class.getName()
+                    + " when added defer constructor.");
+        }
+        clazz.defrost();
+        if (superClass.getName().equals(Object.class.getName())) {
+            try {
+                clazz.addConstructor(CtNewConstructor.make(new CtClass[]{constructorType}, new CtClass[0], "{super();}", clazz));
+            } catch (DuplicateMemberException e) {
+                // OK, the constructor has already been added.
+            }
+        } else {
+            addNewDeferConstructor(superClass);
+            try {
+                clazz.addConstructor(CtNewConstructor.make(new CtClass[]{constructorType}, new CtClass[0], "{super($$);}", clazz));
+            } catch (DuplicateMemberException e) {
+                // OK, the constructor has already been added.
+            }
+        }
+    }
+
     private final class PowerMockExpressionEditor extends ExprEditor {
         private final CtClass clazz;
 
@@ -264,13 +419,15 @@ public class MainMockTransformer implements MockTransformer {
                     return;
                 }
                 StringBuilder code = new StringBuilder();
+                // Field suppression is rare so read the field directly unless something is suppressed
+                code.append("{if (!").append(MockGateway.class.getName()).append(".hasFieldSuppressions()) { $_ = $proceed($$); } else ");
                 code.append("{Object value =  ").append(MockGateway.class.getName()).append(".fieldCall(").append("$0,$class,\"").append(
                         f.getFieldName()).append("\",$type);");
                 code.append("if(value == ").append(MockGateway.class.getName()).append(".PROCEED) {");
                 code.append("	$_ = $proceed($$);");
                 code.append("} else {");
                 code.append("	$_ = ").append(getCorrectReturnValueType(returnTypeAsCtClass)).append(";");
-                code.append("}}");
+                code.append("}}}");
                 f.replace(code.toString());
             }
         }
@@ -281,19 +438,29 @@ public class MainMockTransformer implements MockTransformer {
                 final CtMethod method = m.getMethod();
                 final CtClass declaringClass = method.getDeclaringClass();
                 if (declaringClass != null) {
-                    if (shouldTreatAsSystemClassCall(method, declaringClass)) {
+                    if (shouldTreatAsSystemClassCall(m, declaringClass)) {
                         StringBuilder code = new StringBuilder();
+                        code.append("{");
+                        /*
+                         * Only go through the gateway if something that may
+                         * intercept the call is registered for the system
+                         * class.
+                         */
+                        code.append("if (!").append(MockGateway.class.getName()).append(".hasInterceptions(\"")
+                                .append(declaringClass.getName()).append("\")) { $_ = $proceed($$); } else ");
                         code.append("{Object classOrInstance = null; if($0!=null){classOrInstance = $0;} else { classOrInstance = $class;}");
                         code.append("Object value =  ").append(MockGateway.class.getName()).append(".methodCall(").append("classOrInstance,\"")
-                                .append(m.getMethodName()).append("\",$args, $sig,\"").append(getReturnTypeAsString(method)).append("\");");
+                                .append(m.getMethodName()).append("\",$args,\"").append(getCallSiteId(method)).append("\");");
                         code.append("if(value == ").append(MockGateway.class.getName()).append(".PROCEED) {");
                         code.append("	$_ = $proceed($$);");
-                        code.append("} else {");
                         final String correctReturnValueType = getCorrectReturnValueType(method.getReturnType());
                         if (!VOID.equals(correctReturnValueType)) {
+                            code.append("} else if (value == ").append(MockGateway.class.getName()).append(".SUPPRESS) {");
+                            code.append("	$_ = ").append(getDefaultValue(method.getReturnType())).append(";");
+                            code.append("} else {");
                             code.append("	$_ = ").append(correctReturnValueType).append(";");
                         }
-                        code.append("}}");
+                        code.append("}}}");
                         m.replace(code.toString());
                     }
                 }
@@ -308,10 +475,13 @@ public class MainMockTransformer implements MockTransformer {
             }
         }
 
-        private boolean shouldTreatAsSystemClassCall(CtMethod method, CtClass declaringClass) throws NotFoundException {
+        private boolean shouldTreatAsSystemClassCall(MethodCall m, CtClass declaringClass) throws NotFoundException {
             final String className = declaringClass.getName();
             if (className.startsWith("java.")) {
-                return true;
+                final WildcardPatternSet systemClassesToIntercept = MainMockTransformer.this.systemClassesToIntercept;
+                // The method may be declared in a super class of the class it's invoked on
+                return systemClassesToIntercept == null || systemClassesToIntercept.matches(className)
+                        || systemClassesToIntercept.matches(m.getClassName());
             }
             return false;
         }
@@ -362,62 +532,13 @@ public class MainMockTransformer implements MockTransformer {
             }
         }
 
-        /**
-         * Create a defer constructor in the class which will be called when the
-         * constructor is suppressed.
-         *
-         * @param clazz The class whose super constructor will get a new defer
-         *              constructor if it doesn't already have one.
-         * @throws CannotCompileException If an unexpected compilation error occurs.
-         */
-        private void addNewDeferConstructor(final CtClass clazz) throws CannotCompileException {
-            CtClass superClass = null;
-            try {
-                superClass = clazz.getSuperclass();
-            } catch (NotFoundException e1) {
-                throw new IllegalArgumentException("Internal error: Failed to get superclass for " + clazz.getName()
-                        + " when about to create a new default constructor.");
-            }
-
-            ClassPool classPool = clazz.getClassPool();
-            /*
-             * To make a unique defer constructor we create a new constructor
-             * with one argument (IndicateReloadClass). So we get this class a
-             * Javassist class below.
-             */
-            CtClass constructorType = null;
-            try {
-                constructorType = classPool.get(IndicateReloadClass.class.getName());
-            } catch (NotFoundException e) {
-                throw new IllegalArgumentException("Internal error: failed to get the " + IndicateReloadClass.class.getName()
-                        + " when added defer constructor.");
-            }
-            clazz.defrost();
-            if (superClass.getName().equals(Object.class.getName())) {
-                try {
-                    clazz.addConstructor(CtNewConstructor.make(new CtClass[]{constructorType}, new CtClass[0], "{super();}", clazz));
-                } catch (DuplicateMemberException e) {
-                    // OK, the constructor has already been added.
-                }
-            } else {
-                addNewDeferConstructor(superClass);
-                try {
-                    clazz.addConstructor(CtNewConstructor.make(new CtClass[]{constructorType}, new CtClass[0], "{super($$);}", clazz));
-                } catch (DuplicateMemberException e) {
-                    // OK, the constructor has already been added.
-                }
-            }
-        }
-
         @Override
         public void edit(NewExpr e) throws CannotCompileException {
             final StringBuilder code = new StringBuilder();
             code.append("Object instance =").append(MockGateway.class.getName()).append(".newInstanceCall($type,$args,$sig);");
             code.append("if(instance != ").append(MockGateway.class.getName()).append(".PROCEED) {");
             code.append("	if(instance instanceof java.lang.reflect.Constructor) {");
-            // TODO Change to objenisis instead
-            code
-                    .append("		$_ = ($r) sun.reflect.ReflectionFactory.getReflectionFactory().newConstructorForSerialization($type, java.lang.Object.class.getDeclaredConstructor(null)).newInstance(null);");
+            code.append("		$_ = ($r) ").append(WhiteboxImpl.class.getName()).append(".newInstance($type);");
             code.append("	} else {");
             code.append("		$_ = ($r) instance;");
             code.append("	}");
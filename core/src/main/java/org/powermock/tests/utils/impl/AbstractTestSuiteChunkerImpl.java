@@ -16,6 +16,7 @@
 package org.powermock.tests.utils.impl;
 
 import org.powermock.core.classloader.MockClassLoader;
+import org.powermock.core.classloader.MockClassLoaderPool;
 import org.powermock.core.classloader.annotations.*;
 import org.powermock.core.spi.PowerMockPolicy;
 import org.powermock.core.spi.PowerMockTestListener;
@@ -160,16 +161,7 @@ public abstract class AbstractTestSuiteChunkerImpl<T> implements TestSuiteChunke
     }
 
     protected void chunkClass(final Class<?> testClass) throws Exception {
-        ClassLoader defaultMockLoader = null;
-        final String[] ignorePackages = ignorePackagesExtractor.getPackagesToIgnore(testClass);
-        if (testClass.isAnnotationPresent(PrepareEverythingForTest.class)) {
-            defaultMockLoader = createNewClassloader(testClass, new String[] { MockClassLoader.MODIFY_ALL_CLASSES }, ignorePackages);
-        } else {
-            final String[] prepareForTestClasses = prepareForTestExtractor.getTestClasses(testClass);
-            final String[] suppressStaticClasses = suppressionExtractor.getTestClasses(testClass);
-            defaultMockLoader = createNewClassloader(testClass, arrayMerger.mergeArrays(String.class, prepareForTestClasses, suppressStaticClasses),
-                    ignorePackages);
-        }
+        ClassLoader defaultMockLoader = createDefaultMockLoader(testClass);
         registerProxyframework(defaultMockLoader);
         List<Method> currentClassloaderMethods = new LinkedList<Method>();
         // Put the first suite in the map of internal suites.
@@ -187,27 +179,99 @@ public abstract class AbstractTestSuiteChunkerImpl<T> implements TestSuiteChunke
         }
     }
 
+    /**
+     * @return The class loader for the test methods of <code>testClass</code>
+     *         that don't have a class loader of their own, configured by the
+     *         annotations of the test class.
+     */
+    private ClassLoader createDefaultMockLoader(final Class<?> testClass) {
+        final String[] ignorePackages = ignorePackagesExtractor.getPackagesToIgnore(testClass);
+        if (testClass.isAnnotationPresent(PrepareEverythingForTest.class)) {
+            return createNewClassloader(testClass, new String[] { MockClassLoader.MODIFY_ALL_CLASSES }, ignorePackages);
+        }
+        final String[] prepareForTestClasses = prepareForTestExtractor.getTestClasses(testClass);
+        final String[] suppressStaticClasses = suppressionExtractor.getTestClasses(testClass);
+        return createNewClassloader(testClass, arrayMerger.mergeArrays(String.class, prepareForTestClasses, suppressStaticClasses),
+                ignorePackages);
+    }
+
+    /**
+     * @return The pool that class loaders with the same configuration are
+     *         shared through or <code>null</code> if each test class should
+     *         get class loaders of its own.
+     */
+    protected MockClassLoaderPool getMockClassLoaderPool() {
+        return MockClassLoaderPool.getShared();
+    }
+
     public ClassLoader createNewClassloader(Class<?> testClass, final String[] classesToLoadByMockClassloader, final String[] packagesToIgnore) {
         ClassLoader mockLoader = null;
         if ((classesToLoadByMockClassloader == null || classesToLoadByMockClassloader.length == 0) && !hasMockPolicyProvidedClasses(testClass)) {
             mockLoader = Thread.currentThread().getContextClassLoader();
         } else {
-            List<MockTransformer> mockTransformerChain = new ArrayList<MockTransformer>();
-            final MainMockTransformer mainMockTransformer = new MainMockTransformer();
-            mockTransformerChain.add(mainMockTransformer);
             final UseClassPathAdjuster useClassPathAdjuster = testClass.getAnnotation(UseClassPathAdjuster.class);
-            mockLoader = AccessController.doPrivileged(new PrivilegedAction<MockClassLoader>() {
-                public MockClassLoader run() {
-                    return new MockClassLoader(classesToLoadByMockClassloader, packagesToIgnore, useClassPathAdjuster);
-                }
-            });
-            MockClassLoader mockClassLoader = (MockClassLoader) mockLoader;
-            mockClassLoader.setMockTransformerChain(mockTransformerChain);
+            final InterceptSystemClasses interceptSystemClasses = testClass.getAnnotation(InterceptSystemClasses.class);
+            final String[] systemClassesToIntercept = interceptSystemClasses == null ? null : interceptSystemClasses.value();
+            /*
+             * Test classes with the same configuration may share a pooled
+             * class loader. The test case classes (the test class, its super
+             * classes and their inner classes) are prepared for every test
+             * class so they're not part of the key but added to a shared
+             * class loader. The mock policies are initialized for every test
+             * class since they also prepare the test class itself.
+             */
+            final MockClassLoaderPool pool = getMockClassLoaderPool();
+            final String poolKey = pool == null ? null : MockClassLoaderPool.createKey(
+                    getConfiguredClassesToModify(testClass, classesToLoadByMockClassloader), packagesToIgnore,
+                    systemClassesToIntercept, MockPolicyInitializerImpl.getMockPolicies(testClass), useClassPathAdjuster);
+            MockClassLoader mockClassLoader = pool == null ? null : pool.get(poolKey);
+            if (mockClassLoader == null) {
+                List<MockTransformer> mockTransformerChain = new ArrayList<MockTransformer>();
+                final MainMockTransformer mainMockTransformer = new MainMockTransformer();
+                mockTransformerChain.add(mainMockTransformer);
+                final MockClassLoader newMockClassLoader = AccessController.doPrivileged(new PrivilegedAction<MockClassLoader>() {
+                    public MockClassLoader run() {
+                        return new MockClassLoader(classesToLoadByMockClassloader, packagesToIgnore, useClassPathAdjuster);
+                    }
+                });
+                newMockClassLoader.addSystemClassesToIntercept(systemClassesToIntercept);
+                newMockClassLoader.setMockTransformerChain(mockTransformerChain);
+                /*
+                 * Creating a class loader is cheap since no classes are
+                 * loaded yet, so if another chunker pooled one for the same
+                 * configuration in the meantime this one is just dropped.
+                 */
+                mockClassLoader = pool == null ? newMockClassLoader : pool.putIfAbsent(poolKey, newMockClassLoader);
+            }
+            if (pool != null) {
+                // The pooled class loader may have been created for another test class
+                mockClassLoader.addClassesToModify(classesToLoadByMockClassloader);
+            }
+            mockLoader = mockClassLoader;
             new MockPolicyInitializerImpl(testClass).initialize(mockLoader);
         }
         return mockLoader;
     }
 
+    /**
+     * @return The classes to modify that come from the configuration of
+     *         <code>testClass</code>, i.e. <code>classesToModify</code>
+     *         without the test case classes.
+     */
+    private static String[] getConfiguredClassesToModify(Class<?> testClass, String[] classesToModify) {
+        if (classesToModify == null) {
+            return null;
+        }
+        final Set<String> testCaseClasses = PrepareForTestExtractorImpl.getTestCaseClasses(testClass);
+        final List<String> configured = new ArrayList<String>();
+        for (String className : classesToModify) {
+            if (!testCaseClasses.contains(className)) {
+                configured.add(className);
+            }
+        }
+        return configured.toArray(new String[configured.size()]);
+    }
+
     /**
      * {@inheritDoc}
      */
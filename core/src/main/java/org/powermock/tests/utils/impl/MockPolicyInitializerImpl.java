@@ -201,9 +201,12 @@ public class MockPolicyInitializerImpl implements MockPolicyInitializer {
 
     /**
      * Get the mock policies from a test-class.
+     * 
+     * @return The mock policies of <code>testClass</code>, including those
+     *         inherited from its super classes.
      */
     @SuppressWarnings("unchecked")
-    private static Class<? extends PowerMockPolicy>[] getMockPolicies(Class<?> testClass) {
+    static Class<? extends PowerMockPolicy>[] getMockPolicies(Class<?> testClass) {
         Class<? extends PowerMockPolicy>[] powerMockPolicies = new Class[0];
         if (testClass.isAnnotationPresent(MockPolicy.class)) {
             MockPolicy annotation = testClass.getAnnotation(MockPolicy.class);
@@ -86,6 +86,17 @@ public class PrepareForTestExtractorImpl extends AbstractTestClassExtractor {
         addClassHierarchy(all, testClass);
     }
 
+    /**
+     * @return The names of the classes that are prepared for test because
+     *         they're part of the test case, i.e. the test class, its super
+     *         classes and their inner classes.
+     */
+    static Set<String> getTestCaseClasses(Class<?> testClass) {
+        Set<String> all = new LinkedHashSet<String>();
+        addClassHierarchy(all, testClass);
+        return all;
+    }
+
     private void addFullyQualifiedNames(Set<String> all, PrepareForTest annotation) {
         String[] fullyQualifiedNames = annotation.fullyQualifiedNames();
         addFullyQualifiedNames(all, fullyQualifiedNames);
@@ -104,7 +115,7 @@ public class PrepareForTestExtractorImpl extends AbstractTestClassExtractor {
         }
     }
 
-    private void addClassHierarchy(Set<String> all, Class<?> classToMock) {
+    private static void addClassHierarchy(Set<String> all, Class<?> classToMock) {
         while (classToMock != null && !classToMock.equals(Object.class)) {
             addInnerClassesAndInterfaces(all, classToMock);
             all.add(classToMock.getName());
@@ -112,7 +123,7 @@ public class PrepareForTestExtractorImpl extends AbstractTestClassExtractor {
         }
     }
 
-    private void addInnerClassesAndInterfaces(Set<String> all, Class<?> classToMock) {
+    private static void addInnerClassesAndInterfaces(Set<String> all, Class<?> classToMock) {
         Class<?>[] declaredClasses = classToMock.getDeclaredClasses();
         for (Class<?> innerClass : declaredClasses) {
             all.add(innerClass.getName());
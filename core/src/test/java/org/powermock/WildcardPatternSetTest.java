@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock;
+
+import org.junit.Test;
+import org.powermock.core.WildcardMatcher;
+import org.powermock.core.WildcardPatternSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WildcardPatternSetTest {
+
+    @Test
+    public void matchesExactPatterns() throws Exception {
+        WildcardPatternSet patternSet = WildcardPatternSet.compile("org.mytest.java", "org.mytest.Other");
+        assertTrue(patternSet.matches("org.mytest.java"));
+        assertTrue(patternSet.matches("org.mytest.Other"));
+        assertFalse(patternSet.matches("org.mytest.jav"));
+        assertFalse(patternSet.matches("org.mytest.javax"));
+    }
+
+    @Test
+    public void matchesPrefixPatterns() throws Exception {
+        WildcardPatternSet patternSet = WildcardPatternSet.compile("java.*", "org.powermock.core*");
+        assertTrue(patternSet.matches("java.lang.String"));
+        assertTrue(patternSet.matches("org.powermock.core.MockGateway"));
+        assertFalse(patternSet.matches("javassist.runtime.Desc"));
+    }
+
+    @Test
+    public void matchesPatternsWithWildcardsInTheMiddle() throws Exception {
+        WildcardPatternSet patternSet = WildcardPatternSet.compile("*.java*", "org.*.Service");
+        assertTrue(patternSet.matches("org.mytest.java"));
+        assertTrue(patternSet.matches("org.mytest.MyService.java.Inner"));
+        assertTrue(patternSet.matches("org.my.test.Service"));
+        assertFalse(patternSet.matches("org.my.test.ServiceImpl"));
+    }
+
+    @Test
+    public void compilePrefixesMatchesTextsStartingWithPrefix() throws Exception {
+        WildcardPatternSet patternSet = WildcardPatternSet.compilePrefixes("org/powermock", "sun/");
+        assertTrue(patternSet.matches("org/powermock/core/MockGateway"));
+        assertTrue(patternSet.matches("sun/misc/Unsafe"));
+        assertFalse(patternSet.matches("org/junit/Test"));
+    }
+
+    @Test
+    public void emptyPatternSetMatchesNothing() throws Exception {
+        assertFalse(WildcardPatternSet.compile().matches(""));
+        assertFalse(WildcardPatternSet.compile().matches("org.mytest.java"));
+    }
+
+    @Test
+    public void givesSameResultAsWildcardMatcher() throws Exception {
+        final String[] patterns = new String[] { "*", "**", "a*", "*a", "a*b", "*a*b*", "ab", "a**b", "" };
+        final String[] texts = new String[] { "", "a", "b", "ab", "ba", "aab", "abb", "abab", "bab" };
+        for (String pattern : patterns) {
+            WildcardPatternSet patternSet = WildcardPatternSet.compile(pattern);
+            for (String text : texts) {
+                assertEquals("text '" + text + "' and pattern '" + pattern + "'", WildcardMatcher.matches(text, pattern), patternSet.matches(text));
+            }
+        }
+    }
+}
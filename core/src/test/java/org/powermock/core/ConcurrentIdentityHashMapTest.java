@@ -0,0 +1,57 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentIdentityHashMapTest {
+
+    @Test
+    public void keysAreComparedByIdentity() throws Exception {
+        ConcurrentIdentityHashMap<String, String> map = new ConcurrentIdentityHashMap<String, String>();
+        String key = new String("key");
+        map.put(key, "value");
+
+        assertEquals("value", map.get(key));
+        assertNull(map.get(new String("key")));
+    }
+
+    @Test
+    public void removesEntriesByIdentity() throws Exception {
+        ConcurrentIdentityHashMap<String, String> map = new ConcurrentIdentityHashMap<String, String>(true);
+        String key = new String("key");
+        map.put(key, "value");
+
+        assertNull(map.remove(new String("key")));
+        assertEquals("value", map.remove(key));
+        assertFalse(map.containsKey(key));
+    }
+
+    @Test
+    public void entriesWithWeakKeysAreRemovedWhenTheKeyIsCollected() throws Exception {
+        ConcurrentIdentityHashMap<Object, String> map = new ConcurrentIdentityHashMap<Object, String>(true);
+        map.put(new Object(), "value");
+
+        for (int i = 0; i < 50 && map.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, map.size());
+    }
+}
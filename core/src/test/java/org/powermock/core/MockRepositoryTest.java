@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MockRepositoryTest {
+
+    @After
+    public void clearState() {
+        MockRepository.endTestScope();
+        MockRepository.clear();
+    }
+
+    @Test
+    public void stateOfTestScopeIsNotVisibleToOtherThreads() throws Exception {
+        final AtomicReference<Object> valueInOtherThread = new AtomicReference<Object>();
+        // Created before the scope begins so that it doesn't inherit the scope
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                valueInOtherThread.set(MockRepository.getAdditionalState("key"));
+            }
+        };
+        MockRepository.beginTestScope();
+        MockRepository.putAdditionalState("key", "scoped");
+
+        thread.start();
+        thread.join();
+
+        assertEquals("scoped", MockRepository.getAdditionalState("key"));
+        assertNull(valueInOtherThread.get());
+    }
+
+    @Test
+    public void stateRegisteredOutsideOfTestScopeIsVisibleInTestScope() throws Exception {
+        MockRepository.putAdditionalState("key", "global");
+        MockRepository.beginTestScope();
+
+        assertEquals("global", MockRepository.getAdditionalState("key"));
+    }
+
+    @Test
+    public void clearInTestScopeOnlyClearsTheTestScope() throws Exception {
+        MockRepository.putAdditionalState("global", "value");
+        MockRepository.beginTestScope();
+        MockRepository.putAdditionalState("scoped", "value");
+
+        MockRepository.clear();
+
+        assertNull(MockRepository.getAdditionalState("scoped"));
+        assertEquals("value", MockRepository.getAdditionalState("global"));
+    }
+
+    @Test
+    public void stateRegisteredOutsideOfTestScopeCanBeRemovedInTestScope() throws Exception {
+        MockRepository.putAdditionalState("key", "global");
+        MockRepository.beginTestScope();
+
+        assertEquals("global", MockRepository.removeAdditionalState("key"));
+        assertNull(MockRepository.getAdditionalState("key"));
+    }
+
+    @Test
+    public void endingTestScopeRunsAfterMethodRunners() throws Exception {
+        final AtomicReference<Boolean> hasRun = new AtomicReference<Boolean>(false);
+        MockRepository.beginTestScope();
+        MockRepository.addAfterMethodRunner(new Runnable() {
+            public void run() {
+                hasRun.set(true);
+            }
+        });
+
+        MockRepository.endTestScope();
+
+        assertTrue(hasRun.get());
+    }
+
+    @Test
+    public void stubsMayReturnNull() throws Exception {
+        MockRepository.putMethodToStub(Object.class.getMethod("toString"), null);
+
+        assertTrue(MockRepository.shouldStubMethod(Object.class.getMethod("toString")));
+        assertNull(MockRepository.getMethodToStub(Object.class.getMethod("toString")));
+    }
+
+    @Test
+    public void methodsAreOnlySuppressedWhenCalledFromTheDeclaringClass() throws Exception {
+        Method suppressedInThisClass = getClass().getMethod("clearState");
+        Method suppressedInOtherClass = Object.class.getMethod("toString");
+        MockRepository.addMethodToSuppress(suppressedInThisClass);
+        MockRepository.addMethodToSuppress(suppressedInOtherClass);
+
+        assertTrue(MockRepository.shouldSuppressMethod(suppressedInThisClass, getClass()));
+        assertFalse(MockRepository.shouldSuppressMethod(suppressedInOtherClass, getClass()));
+        assertFalse(MockRepository.shouldSuppressMethod(getClass().getMethod("stubsMayReturnNull"), getClass()));
+    }
+
+    @Test
+    public void methodProxiesCanBeReplacedAndRemoved() throws Exception {
+        Method method = Object.class.getMethod("toString");
+        InvocationHandler first = new NullInvocationHandler();
+        InvocationHandler second = new NullInvocationHandler();
+
+        assertNull(MockRepository.putMethodProxy(method, first));
+        assertSame(first, MockRepository.putMethodProxy(method, second));
+        assertSame(second, MockRepository.getMethodProxy(method));
+        assertSame(second, MockRepository.removeMethodProxy(method));
+        assertFalse(MockRepository.hasMethodProxy(method));
+    }
+
+    private static class NullInvocationHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class DiskClassBytecodeCacheTest {
+
+    private File directory;
+
+    @Before
+    public void createCacheDirectory() throws Exception {
+        directory = File.createTempFile("powermock", "cache");
+        directory.delete();
+    }
+
+    @After
+    public void deleteCacheDirectory() throws Exception {
+        delete(directory);
+    }
+
+    @Test
+    public void returnsNullForUnknownKey() throws Exception {
+        DiskClassBytecodeCache cache = new DiskClassBytecodeCache(directory);
+        assertNull(cache.get(new BytecodeCacheKey("my.Class").toKey()));
+    }
+
+    @Test
+    public void storedBytecodeIsAvailableToOtherCacheInstances() throws Exception {
+        final String key = new BytecodeCacheKey("my.Class").add(new byte[] { 1, 2, 3 }).toKey();
+        new DiskClassBytecodeCache(directory).put(key, new byte[] { 4, 5, 6 });
+
+        byte[] bytecode = new DiskClassBytecodeCache(directory).get(key);
+        assertNotNull(bytecode);
+        assertEquals(3, bytecode.length);
+        assertEquals(6, bytecode[2]);
+    }
+
+    @Test
+    public void keyDependsOnSourceBytecodeAndSettings() throws Exception {
+        final String key = new BytecodeCacheKey("my.Class").add(new byte[] { 1 }).add("setting").toKey();
+        assertEquals(key, new BytecodeCacheKey("my.Class").add(new byte[] { 1 }).add("setting").toKey());
+        assertFalse(key.equals(new BytecodeCacheKey("my.Class").add(new byte[] { 2 }).add("setting").toKey()));
+        assertFalse(key.equals(new BytecodeCacheKey("my.Class").add(new byte[] { 1 }).add("other").toKey()));
+        assertFalse(key.equals(new BytecodeCacheKey("my.Other").add(new byte[] { 1 }).add("setting").toKey()));
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
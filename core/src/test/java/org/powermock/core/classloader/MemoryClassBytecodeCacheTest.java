@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryClassBytecodeCacheTest {
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        MemoryClassBytecodeCache cache = new MemoryClassBytecodeCache(100);
+        cache.put("a", new byte[10]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesWhenFull() throws Exception {
+        MemoryClassBytecodeCache cache = new MemoryClassBytecodeCache(30);
+        cache.put("a", new byte[10]);
+        cache.put("b", new byte[10]);
+        cache.put("c", new byte[10]);
+        cache.get("a");
+
+        cache.put("d", new byte[10]);
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(30, cache.getSize());
+    }
+
+    @Test
+    public void doesntStoreBytecodeLargerThanTheCache() throws Exception {
+        MemoryClassBytecodeCache cache = new MemoryClassBytecodeCache(5);
+        cache.put("a", new byte[10]);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.core.classloader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MockClassLoaderPoolTest {
+
+    @Test
+    public void createsSameKeyRegardlessOfTheOrderOfClassesAndPackages() throws Exception {
+        String first = MockClassLoaderPool.createKey(new String[] { "a.B", "a.A", "a.B" }, new String[] { "org.y.*", "org.x.*" }, null, null, null);
+        String second = MockClassLoaderPool.createKey(new String[] { "a.A", "a.B" }, new String[] { "org.x.*", "org.y.*" }, new String[0], new Class<?>[0], null);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void createsDifferentKeysForDifferentMockPolicies() throws Exception {
+        String[] classes = new String[] { "a.A" };
+        String first = MockClassLoaderPool.createKey(classes, null, null, new Class<?>[] { String.class }, null);
+        String second = MockClassLoaderPool.createKey(classes, null, null, new Class<?>[] { Integer.class }, null);
+
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void createsDifferentKeysForDifferentSystemClassesToIntercept() throws Exception {
+        String[] classes = new String[] { "a.A" };
+        String first = MockClassLoaderPool.createKey(classes, null, new String[] { "java.lang.System" }, null, null);
+        String second = MockClassLoaderPool.createKey(classes, null, null, null, null);
+
+        assertFalse(first.equals(second));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedClassLoadersWhenFull() throws Exception {
+        MockClassLoaderPool pool = new MockClassLoaderPool(2);
+        MockClassLoader a = new MockClassLoader(new String[] { "a.A" });
+        pool.putIfAbsent("a", a);
+        pool.putIfAbsent("b", new MockClassLoader(new String[] { "b.B" }));
+        pool.get("a");
+
+        pool.putIfAbsent("c", new MockClassLoader(new String[] { "c.C" }));
+
+        assertSame(a, pool.get("a"));
+        assertNull(pool.get("b"));
+        assertNotNull(pool.get("c"));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void keepsTheFirstClassLoaderPutUnderAKey() throws Exception {
+        MockClassLoaderPool pool = new MockClassLoaderPool(2);
+        MockClassLoader first = new MockClassLoader(new String[] { "a.A" });
+
+        assertSame(first, pool.putIfAbsent("a", first));
+        assertSame(first, pool.putIfAbsent("a", new MockClassLoader(new String[] { "a.A" })));
+        assertSame(first, pool.get("a"));
+    }
+}
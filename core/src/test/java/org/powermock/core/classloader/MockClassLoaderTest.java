@@ -23,6 +23,7 @@ import org.powermock.core.classloader.annotations.UseClassPathAdjuster;
 import org.powermock.core.transformers.MockTransformer;
 import org.powermock.core.transformers.impl.MainMockTransformer;
 import org.powermock.reflect.Whitebox;
+import powermock.test.support.MainMockTransformerTestSupport;
 
 import java.io.FileOutputStream;
 import java.lang.annotation.Annotation;
@@ -31,6 +32,7 @@ import java.net.URLClassLoader;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import javassist.ByteArrayClassPath;
 import javassist.CannotCompileException;
@@ -63,24 +65,65 @@ public class MockClassLoaderTest {
         Assert.assertEquals("5", Whitebox.invokeMethod(object, "testString"));
     }
 
+    @Test
+    public void classIsOnlyDefinedOnceWhenLoadedByManyThreads() throws Exception {
+        // Classes in org.powermock.core are always deferred
+        final String name = MainMockTransformerTestSupport.class.getName();
+        final MockClassLoader mockClassLoader = new MockClassLoader(new String[] { name });
+        List<MockTransformer> list = new LinkedList<MockTransformer>();
+        list.add(new MainMockTransformer());
+        mockClassLoader.setMockTransformerChain(list);
+
+        final int numberOfThreads = 8;
+        final Class<?>[] loadedClasses = new Class<?>[numberOfThreads];
+        final Throwable[] errors = new Throwable[numberOfThreads];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        loadedClasses[index] = mockClassLoader.loadClass(name);
+                    } catch (Throwable e) {
+                        errors[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < numberOfThreads; i++) {
+            assertNull(errors[i]);
+            assertSame(loadedClasses[0], loadedClasses[i]);
+        }
+        assertSame(mockClassLoader, loadedClasses[0].getClassLoader());
+    }
+
     @Test
     public void prepareForTestHasPrecedenceOverPowerMockIgnoreAnnotatedPackages() throws Exception {
         MockClassLoader mockClassLoader = new MockClassLoader(new String[] { "org.mytest.myclass" });
-        Whitebox.setInternalState(mockClassLoader, new String[] { "*mytest*" }, DeferSupportingClassLoader.class);
+        mockClassLoader.addIgnorePackage("*mytest*");
         assertTrue(Whitebox.<Boolean>invokeMethod(mockClassLoader, "shouldModify", "org.mytest.myclass"));
     }
 
     @Test
     public void powerMockIgnoreAnnotatedPackagesAreIgnored() throws Exception {
         MockClassLoader mockClassLoader = new MockClassLoader(new String[] { "org.ikk.Jux" });
-        Whitebox.setInternalState(mockClassLoader, new String[] { "*mytest*" }, DeferSupportingClassLoader.class);
+        mockClassLoader.addIgnorePackage("*mytest*");
         assertFalse(Whitebox.<Boolean> invokeMethod(mockClassLoader, "shouldModify", "org.mytest.myclass"));
     }
 
     @Test
     public void powerMockIgnoreAnnotatedPackagesHavePrecedenceOverPrepareEverythingForTest() throws Exception {
         MockClassLoader mockClassLoader = new MockClassLoader(new String[] { MODIFY_ALL_CLASSES });
-        Whitebox.setInternalState(mockClassLoader, new String[] { "*mytest*" }, DeferSupportingClassLoader.class);
+        mockClassLoader.addIgnorePackage("*mytest*");
         assertFalse(Whitebox.<Boolean> invokeMethod(mockClassLoader, "shouldModify", "org.mytest.myclass"));
     }
 
@@ -99,6 +142,42 @@ public class MockClassLoaderTest {
         assertEquals("test*", deferPackages[deferPackages.length - 1]);
     }
     
+    @Test
+    public void ignorePackagesAddedByManyThreadsAreAllDeferred() throws Exception {
+        final MockClassLoader mockClassLoader = new MockClassLoader(new String[] { MODIFY_ALL_CLASSES });
+        final int numberOfThreads = 16;
+        final int packagesPerThread = 100;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < packagesPerThread; j++) {
+                        mockClassLoader.addIgnorePackage("org.ignored" + index + "_" + j + ".*");
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < numberOfThreads; i++) {
+            for (int j = 0; j < packagesPerThread; j++) {
+                assertFalse(Whitebox.<Boolean> invokeMethod(mockClassLoader, "shouldModify", "org.ignored" + i + "_" + j + ".MyClass"));
+            }
+        }
+    }
+
     @Test
     public void canFindResource() throws Exception {
         final MockClassLoader mockClassLoader = new MockClassLoader(new String[0]);
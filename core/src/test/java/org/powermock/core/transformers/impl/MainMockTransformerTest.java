@@ -17,16 +17,27 @@
 package org.powermock.core.transformers.impl;
 
 import javassist.Modifier;
+import org.junit.After;
 import org.junit.Test;
+import org.powermock.core.MockRepository;
 import org.powermock.core.classloader.MockClassLoader;
 import org.powermock.core.transformers.MockTransformer;
+import org.powermock.reflect.Whitebox;
 import powermock.test.support.MainMockTransformerTestSupport.SupportClasses;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.util.Collections;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
 public class MainMockTransformerTest {
+    @After
+    public void clearMockRepository() {
+        MockRepository.clear();
+    }
+
     /**
      * This tests that a inner 'public static final class' can be modified to drop the final modifier. Fixes <a
      * href="http://code.google.com/p/powermock/issues/detail?id=95">Issue 95</a>.
@@ -70,4 +81,24 @@ public class MainMockTransformerTest {
         final Class<?> clazz = Class.forName(SupportClasses.class.getName() + "$PrivateStaticFinalInnerClass", true, mockClassLoader);
         assertFalse(Modifier.isFinal(clazz.getModifiers()));
     }
+
+    /**
+     * Preparing a system class for test must not narrow the interception to
+     * that class, calls to all system classes are still intercepted.
+     */
+    @Test
+    public void callsToAllSystemClassesAreInterceptedWhenASystemClassIsPreparedForTest() throws Exception {
+        final String callerName = SupportClasses.SystemClassCaller.class.getName();
+        MockClassLoader mockClassLoader = new MockClassLoader(new String[] { callerName, "java.lang.System" });
+        mockClassLoader.setMockTransformerChain(Collections.<MockTransformer> singletonList(new MainMockTransformer()));
+        MockRepository.putMethodProxy(String.class.getMethod("valueOf", int.class), new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return "intercepted";
+            }
+        });
+
+        final Class<?> caller = Class.forName(callerName, true, mockClassLoader);
+
+        assertEquals("intercepted", Whitebox.invokeMethod(caller, "valueOf", 5));
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.tests.utils.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.powermock.core.MockRepository;
+import org.powermock.core.classloader.MockClassLoaderPool;
+import org.powermock.core.classloader.annotations.InterceptSystemClasses;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.reflect.Whitebox;
+import powermock.test.support.MainMockTransformerTestSupport;
+import powermock.test.support.MainMockTransformerTestSupport.SupportClasses;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AbstractTestSuiteChunkerImplTest {
+
+    @After
+    public void clearMockRepository() {
+        MockRepository.clear();
+    }
+
+    @Test
+    public void testClassesWithTheSameAnnotationsShareAPooledClassLoader() throws Exception {
+        PooledTestSuiteChunker tested = new PooledTestSuiteChunker();
+
+        ClassLoader first = Whitebox.invokeMethod(tested, "createDefaultMockLoader", FirstTestClass.class);
+        ClassLoader second = Whitebox.invokeMethod(tested, "createDefaultMockLoader", SecondTestClass.class);
+
+        assertSame(first, second);
+        assertTrue((Boolean) Whitebox.invokeMethod(first, "shouldModifyClass", FirstTestClass.class.getName()));
+        assertTrue((Boolean) Whitebox.invokeMethod(first, "shouldModifyClass", SecondTestClass.class.getName()));
+    }
+
+    @Test
+    public void testClassesWithDifferentAnnotationsDontShareAPooledClassLoader() throws Exception {
+        PooledTestSuiteChunker tested = new PooledTestSuiteChunker();
+
+        ClassLoader first = Whitebox.invokeMethod(tested, "createDefaultMockLoader", FirstTestClass.class);
+        ClassLoader other = Whitebox.invokeMethod(tested, "createDefaultMockLoader", OtherTestClass.class);
+
+        assertNotSame(first, other);
+    }
+
+    @Test
+    public void testOnlyCallsToTheSystemClassesInterceptedByTheTestClassAreIntercepted() throws Exception {
+        PooledTestSuiteChunker tested = new PooledTestSuiteChunker();
+        final InvocationHandler intercepted = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return method.getReturnType() == String.class ? "intercepted" : -1;
+            }
+        };
+        MockRepository.putMethodProxy(String.class.getMethod("valueOf", int.class), intercepted);
+        MockRepository.putMethodProxy(Math.class.getMethod("max", int.class, int.class), intercepted);
+
+        ClassLoader classLoader = Whitebox.invokeMethod(tested, "createDefaultMockLoader", InterceptingTestClass.class);
+        Class<?> caller = Class.forName(SupportClasses.SystemClassCaller.class.getName(), true, classLoader);
+
+        assertEquals("intercepted", Whitebox.invokeMethod(caller, "valueOf", 5));
+        assertEquals(2, Whitebox.invokeMethod(caller, "max", 1, 2));
+        assertNotSame(classLoader, Whitebox.invokeMethod(tested, "createDefaultMockLoader", NotInterceptingTestClass.class));
+    }
+
+    private static class PooledTestSuiteChunker extends AbstractTestSuiteChunkerImpl<Object> {
+
+        private final MockClassLoaderPool pool = new MockClassLoaderPool(2);
+
+        PooledTestSuiteChunker() throws Exception {
+            super();
+        }
+
+        @Override
+        protected MockClassLoaderPool getMockClassLoaderPool() {
+            return pool;
+        }
+
+        @Override
+        protected Object createDelegatorFromClassloader(ClassLoader classLoader, Class<?> testClass, List<Method> methodsToTest) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean shouldExecuteTestForMethod(Class<?> testClass, Method potentialTestMethod) {
+            return false;
+        }
+
+        public int getTestCount() {
+            return 0;
+        }
+    }
+
+    @PrepareForTest(MainMockTransformerTestSupport.class)
+    public static class FirstTestClass {
+    }
+
+    @PrepareForTest(MainMockTransformerTestSupport.class)
+    public static class SecondTestClass {
+    }
+
+    @PrepareForTest(fullyQualifiedNames = "powermock.test.support.*")
+    public static class OtherTestClass {
+    }
+
+    @InterceptSystemClasses("java.lang.String")
+    @PrepareForTest(SupportClasses.SystemClassCaller.class)
+    public static class InterceptingTestClass {
+    }
+
+    @PrepareForTest(SupportClasses.SystemClassCaller.class)
+    public static class NotInterceptingTestClass {
+    }
+}
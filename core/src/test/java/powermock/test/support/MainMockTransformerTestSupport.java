@@ -39,5 +39,15 @@ public class MainMockTransformerTestSupport {
         public enum EnumClass {
             VALUE;
         }
+
+        public static class SystemClassCaller {
+            public static String valueOf(int value) {
+                return String.valueOf(value);
+            }
+
+            public static int max(int first, int second) {
+                return Math.max(first, second);
+            }
+        }
     }
 }
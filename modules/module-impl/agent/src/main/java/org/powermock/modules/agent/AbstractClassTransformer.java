@@ -16,6 +16,9 @@
 
 package org.powermock.modules.agent;
 
+import org.powermock.core.WildcardPatternSet;
+
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -37,21 +40,27 @@ public abstract class AbstractClassTransformer {
 
         CONTAINS_IGNORED.add("CGLIB$$");
         CONTAINS_IGNORED.add("$$PowerMock");
-    }     
-    
+    }
+
+    /*
+     * STARTS_WITH_IGNORED and CONTAINS_IGNORED compiled into a pattern set
+     * since shouldIgnore is called for every class that is loaded.
+     */
+    private static final WildcardPatternSet IGNORED = compileIgnored();
+
     protected boolean shouldIgnore(String className) {
+        return IGNORED.matches(className);
+    }
+
+    private static WildcardPatternSet compileIgnored() {
+        final List<String> patterns = new ArrayList<String>();
         for (String ignore : STARTS_WITH_IGNORED) {
-            if(className.startsWith(ignore)) {
-                return true;
-            }
+            patterns.add(ignore + "*");
         }
-    
         for (String ignore : CONTAINS_IGNORED) {
-            if(className.contains(ignore)) {
-                return true;
-            }
+            patterns.add("*" + ignore + "*");
         }
-        return false;
+        return WildcardPatternSet.compile(patterns);
     }
 
 }
@@ -13,24 +13,40 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.powermock.modules.agent;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Redefines the classes prepared for test using the PowerMock java agent.
+ * <p>
+ * The agent keeps track of the classes that are currently redefined. When the
+ * classes of a new test are redefined, classes that are already redefined are
+ * left as they are and classes that the new test doesn't need are restored to
+ * their original byte-code. Both are done in a single retransformation so that
+ * the JVM only has to stop the world once per test.
+ */
 public class PowerMockClassRedefiner {
 
+    private static final Map<String, Class<?>> redefinedClasses = new HashMap<String, Class<?>>();
+
     public static void redefine(Class<?> cls) {
         if(cls == null) {
             throw new IllegalArgumentException("Class to redefine cannot be null");
         }
-        
-        PowerMockAgent.getClasstransformer().setClassesToTransform(Arrays.asList(cls.getName()));
-        
-        try {            
-            PowerMockAgent.instrumentation().retransformClasses(cls);
-        } catch(Exception e){
-            throw new RuntimeException("Failed to redefine class "+cls.getName(), e);
+        synchronized (redefinedClasses) {
+            if (redefinedClasses.containsKey(cls.getName())) {
+                return;
+            }
+            final Map<String, Class<?>> classes = new LinkedHashMap<String, Class<?>>(redefinedClasses);
+            classes.put(cls.getName(), cls);
+            PowerMockAgent.getClasstransformer().setClassesToTransform(classes.keySet());
+            retransform(cls);
+            redefinedClasses.put(cls.getName(), cls);
         }
     }
 
@@ -44,20 +60,67 @@ public class PowerMockClassRedefiner {
             throw new RuntimeException(e);
         }
     }
-    
+
+    /**
+     * Redefine <code>classes</code> and restore all other classes that have
+     * been redefined by a previous call.
+     */
     public static void redefine(String[] classes) {
-        PowerMockAgent.getClasstransformer().setClassesToTransform(Arrays.asList(classes));
-        
+        final Map<String, Class<?>> classesToRedefine = new LinkedHashMap<String, Class<?>>();
         for (int i = classes.length - 1; i >= 0 ; i--) {
-            String className = classes[i];
-            Class<?> clazz;
+            final String className = classes[i];
             try {
-                clazz = Class.forName(className);
-                
-                PowerMockAgent.instrumentation().retransformClasses(clazz);
+                classesToRedefine.put(className, Class.forName(className));
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
+
+        synchronized (redefinedClasses) {
+            final List<Class<?>> classesToRetransform = new ArrayList<Class<?>>();
+            for (Map.Entry<String, Class<?>> entry : classesToRedefine.entrySet()) {
+                if (!redefinedClasses.containsKey(entry.getKey())) {
+                    classesToRetransform.add(entry.getValue());
+                }
+            }
+            for (Map.Entry<String, Class<?>> entry : redefinedClasses.entrySet()) {
+                if (!classesToRedefine.containsKey(entry.getKey())) {
+                    classesToRetransform.add(entry.getValue());
+                }
+            }
+            PowerMockAgent.getClasstransformer().setClassesToTransform(classesToRedefine.keySet());
+            retransform(classesToRetransform.toArray(new Class<?>[classesToRetransform.size()]));
+            redefinedClasses.clear();
+            redefinedClasses.putAll(classesToRedefine);
+        }
+    }
+
+    /**
+     * Restore all redefined classes to their original byte-code.
+     */
+    public static void restore() {
+        redefine(new String[0]);
+    }
+
+    private static void retransform(Class<?>... classes) {
+        if (classes.length == 0) {
+            return;
+        }
+        try {
+            PowerMockAgent.instrumentation().retransformClasses(classes);
+        } catch(Exception e){
+            throw new RuntimeException("Failed to redefine classes " + classNames(classes), e);
+        }
+    }
+
+    private static String classNames(Class<?>[] classes) {
+        final StringBuilder builder = new StringBuilder();
+        for (Class<?> cls : classes) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(cls.getName());
+        }
+        return builder.toString();
     }
 }
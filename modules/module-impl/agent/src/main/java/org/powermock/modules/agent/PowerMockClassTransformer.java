@@ -13,16 +13,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.powermock.modules.agent;
 
 import java.io.ByteArrayInputStream;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -33,9 +35,20 @@ import org.powermock.core.transformers.impl.MainMockTransformer;
 class PowerMockClassTransformer extends AbstractClassTransformer implements ClassFileTransformer {
 
 	private volatile Set<String> classesToTransform;
-    
+
+    /*
+     * The original and the transformed byte-code of each class that is
+     * currently to be transformed. A class that is redefined again by a later
+     * test is not transformed again as long as its original byte-code is the
+     * same. Classes that are no longer to be transformed are dropped and
+     * restored by the JVM since it passes the original byte-code to the
+     * transformer on retransformation.
+     */
+    private final ConcurrentMap<String, Bytecode> transformedClasses = new ConcurrentHashMap<String, Bytecode>();
+
     public void setClassesToTransform(Collection<String> classesToTransform) {
     	this.classesToTransform = new HashSet<String>(classesToTransform);
+        transformedClasses.keySet().retainAll(this.classesToTransform);
     }
     
     private static final MainMockTransformer mainMockTransformer = new MainMockTransformer(TransformStrategy.INST_REDEFINE);
@@ -45,7 +58,13 @@ class PowerMockClassTransformer extends AbstractClassTransformer implements Clas
             return null;
         }
         try {            
-            if (classesToTransform != null && classesToTransform.contains(className.replace("/", "."))) {            
+            final String name = className.replace("/", ".");
+            if (classesToTransform != null && classesToTransform.contains(name)) {
+                final Bytecode previous = transformedClasses.get(name);
+                if (previous != null && Arrays.equals(previous.original, classfileBuffer)) {
+                    return previous.transformed;
+                }
+
                 ByteArrayInputStream is = new ByteArrayInputStream(classfileBuffer);
                 CtClass ctClass = null;
                 try {
@@ -55,8 +74,10 @@ class PowerMockClassTransformer extends AbstractClassTransformer implements Clas
                 }
                 
                 ctClass = mainMockTransformer.transform(ctClass);
-                
-                return ctClass.toBytecode();                      
+
+                final byte[] transformed = ctClass.toBytecode();
+                transformedClasses.put(name, new Bytecode(classfileBuffer.clone(), transformed));
+                return transformed;
             } 
             
             return null;           
@@ -66,4 +87,14 @@ class PowerMockClassTransformer extends AbstractClassTransformer implements Clas
         
 
     }
+
+    private static class Bytecode {
+        private final byte[] original;
+        private final byte[] transformed;
+
+        Bytecode(byte[] original, byte[] transformed) {
+            this.original = original;
+            this.transformed = transformed;
+        }
+    }
 }
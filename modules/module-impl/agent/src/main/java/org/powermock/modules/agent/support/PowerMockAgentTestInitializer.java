@@ -15,7 +15,6 @@
  */
 package org.powermock.modules.agent.support;
 
-import org.powermock.core.MockRepository;
 import org.powermock.modules.agent.PowerMockClassRedefiner;
 import org.powermock.reflect.Whitebox;
 import org.powermock.reflect.proxyframework.RegisterProxyFramework;
@@ -29,23 +28,24 @@ public class PowerMockAgentTestInitializer {
     private static final SimpleClassCache CACHE = new SimpleClassCache(100);
 
     public static void initialize(Class<?> testClass) {
-        /*
-		 * For extra safety clear the MockitoRepository.
-		 */
-        MockRepository.clear();
-
         PrepareForTestExtractorImpl testClassesExtractor = new PrepareForTestExtractorImpl();
         StaticConstructorSuppressExtractorImpl suppressExtractor = new StaticConstructorSuppressExtractorImpl();
         final String[] classesToPrepare = testClassesExtractor.getTestClasses(testClass);
         final String[] classesToSuppress = suppressExtractor.getTestClasses(testClass);
-        redefine(classesToPrepare);
-        redefine(classesToSuppress);
+        /*
+         * Redefine all classes in one go, this also restores the classes
+         * redefined for the previous test that this test doesn't need.
+         */
+        redefine(classesToPrepare, classesToSuppress);
         final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
         registerProxyframework(contextClassLoader);
         new MockPolicyInitializerImpl(testClass).initialize(contextClassLoader);
     }
 
-    private static void redefine(String[] classes) {
+    private static void redefine(String[] classesToPrepare, String[] classesToSuppress) {
+        final String[] classes = new String[classesToPrepare.length + classesToSuppress.length];
+        System.arraycopy(classesToPrepare, 0, classes, 0, classesToPrepare.length);
+        System.arraycopy(classesToSuppress, 0, classes, classesToPrepare.length, classesToSuppress.length);
         PowerMockClassRedefiner.redefine(classes);
     }
 
@@ -22,6 +22,14 @@ import org.powermock.core.MockRepository;
 import org.powermock.modules.agent.PowerMockAgent;
 import org.powermock.modules.agent.support.PowerMockAgentTestInitializer;
 
+/**
+ * Prepares the classes of each test using the PowerMock java agent.
+ * <p>
+ * The prepared classes are not restored when a test ends. They stay
+ * instrumented until the next test runs. The next test then restores the
+ * classes it doesn't prepare itself and keeps the ones it does, without
+ * instrumenting them again.
+ */
 public class PowerMockRule implements MethodRule {
     static {
         if(PowerMockRule.class.getClassLoader() != ClassLoader.getSystemClassLoader()) {
@@ -30,26 +38,38 @@ public class PowerMockRule implements MethodRule {
         PowerMockAgent.initializeIfPossible();
     }
 
+    public PowerMockRule() {
+        /*
+         * The rule is created with the test instance, so mocks created by the
+         * fields initialized after the rule end up in the scope of the test
+         * and not in the state shared by all threads. The scope ends when the
+         * test has been evaluated.
+         */
+        MockRepository.beginTestScope();
+    }
+
     public Statement apply(Statement base, FrameworkMethod method, Object target) {
-        PowerMockAgentTestInitializer.initialize(target.getClass());
-        return new PowerMockStatement(base);
+        return new PowerMockStatement(base, target.getClass());
     }
 }
 
 class PowerMockStatement extends Statement {
     private final Statement fNext;
+    private final Class<?> testClass;
 
-    public PowerMockStatement(Statement base) {
+    public PowerMockStatement(Statement base, Class<?> testClass) {
         fNext = base;
+        this.testClass = testClass;
     }
 
     @Override
     public void evaluate() throws Throwable {
         try {
+            PowerMockAgentTestInitializer.initialize(testClass);
             fNext.evaluate();
         } finally {
             // Clear the mock repository after each test
-            MockRepository.clear();
+            MockRepository.endTestScope();
         }
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.modules.junit4.rule;
+
+import org.powermock.classloading.ClassloaderExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pool of the {@link ClassloaderExecutor}s (and thus mock class loaders)
+ * used by {@link PowerMockRule}, one per test class. This avoids creating a
+ * new mock class loader, and transforming the prepared classes again, when
+ * the tests of different test classes are interleaved, e.g. when they run in
+ * random order or in parallel. The pool is bounded by the number of
+ * executors it holds, the least recently used executor is evicted first which
+ * releases its class loader.
+ * <p>
+ * The size of the pool can be configured using the system property
+ * {@value #MAX_SIZE_PROPERTY}.
+ */
+class ClassloaderExecutorPool {
+
+    /**
+     * The system property that configures the maximum number of executors in
+     * the pool.
+     */
+    static final String MAX_SIZE_PROPERTY = "powermock.rule.executor.pool.size";
+
+    private static final int DEFAULT_MAX_SIZE = 8;
+
+    private final LinkedHashMap<Class<?>, ClassloaderExecutor> executors;
+
+    ClassloaderExecutorPool(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The pool must hold at least one executor but the size was " + maxSize + ".");
+        }
+        this.executors = new LinkedHashMap<Class<?>, ClassloaderExecutor>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Class<?>, ClassloaderExecutor> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    static ClassloaderExecutorPool fromSystemProperty() {
+        final String maxSize = System.getProperty(MAX_SIZE_PROPERTY);
+        if (maxSize == null) {
+            return new ClassloaderExecutorPool(DEFAULT_MAX_SIZE);
+        }
+        try {
+            return new ClassloaderExecutorPool(Integer.parseInt(maxSize.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The system property " + MAX_SIZE_PROPERTY + " must be a number of executors but was "
+                    + maxSize + ".", e);
+        }
+    }
+
+    /**
+     * @return The executor of <code>testClass</code>, created if it's not in
+     *         the pool. The executor is created while holding the lock of the
+     *         pool so that tests of the same class running in parallel never
+     *         create more than one mock class loader.
+     */
+    ClassloaderExecutor get(Class<?> testClass) {
+        synchronized (executors) {
+            ClassloaderExecutor executor = executors.get(testClass);
+            if (executor == null) {
+                executor = PowerMockClassloaderExecutor.forClass(testClass);
+                executors.put(testClass, executor);
+            }
+            return executor;
+        }
+    }
+
+    int size() {
+        synchronized (executors) {
+            return executors.size();
+        }
+    }
+}
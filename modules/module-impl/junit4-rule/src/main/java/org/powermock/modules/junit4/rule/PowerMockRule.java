@@ -23,40 +23,70 @@ import org.powermock.classloading.ClassloaderExecutor;
 import org.powermock.core.MockRepository;
 
 public class PowerMockRule implements MethodRule {
-	private static ClassloaderExecutor classloaderExecutor;
-	private static Class<?> previousTargetClass;
+	private static final ClassloaderExecutorPool classloaderExecutors = ClassloaderExecutorPool.fromSystemProperty();
+
+	private final boolean keepTestInstance;
+
+	public PowerMockRule() {
+		this(false);
+	}
+
+	/**
+	 * @param keepTestInstance
+	 *            <code>true</code> to clone the test instance into the mock
+	 *            class-loader only for the first test and run the following
+	 *            tests of the test class on the same clone. This avoids deep
+	 *            cloning the test instance for every test but the state of the
+	 *            test instance is not reset between tests and changes made to
+	 *            new test instances (e.g. by other rules) are not seen by the
+	 *            tests. Requires a deep cloner that supports it, such as the
+	 *            Objenesis deep cloner, otherwise the test instance is cloned
+	 *            for every test.
+	 */
+	public PowerMockRule(boolean keepTestInstance) {
+		this.keepTestInstance = keepTestInstance;
+		/*
+		 * The rule is created with the test instance, so mocks created by the
+		 * fields initialized after the rule (and everything registered when
+		 * the test instance is cloned into the mock class loader) end up in
+		 * the scope of the test and not in the state shared by all threads.
+		 * The scope ends when the test has been evaluated.
+		 */
+		MockRepository.beginTestScope();
+	}
 
 	public Statement apply(Statement base, FrameworkMethod method, Object target) {
-		if (classloaderExecutor == null || previousTargetClass != target.getClass()) {
-			classloaderExecutor = PowerMockClassloaderExecutor.forClass(target.getClass());
-			previousTargetClass = target.getClass();
-		}
-		return new PowerMockStatement(base, classloaderExecutor);
+		final ClassloaderExecutor classloaderExecutor = classloaderExecutors.get(target.getClass());
+		return new PowerMockStatement(base, classloaderExecutor, keepTestInstance ? target : null);
 	}
 }
 
 class PowerMockStatement extends Statement {
 	private final Statement fNext;
 	private final ClassloaderExecutor classloaderExecutor;
+	private final Object keptInstance;
 
-	public PowerMockStatement(Statement base, ClassloaderExecutor classloaderExecutor) {
+	public PowerMockStatement(Statement base, ClassloaderExecutor classloaderExecutor, Object keptInstance) {
 		fNext = base;
 		this.classloaderExecutor = classloaderExecutor;
+		this.keptInstance = keptInstance;
 	}
 
 	@Override
 	public void evaluate() throws Throwable {
-		classloaderExecutor.execute(new Runnable() {
-			public void run() {
-				try {
-					fNext.evaluate();
-				} catch (Throwable e) {
-					SafeExceptionRethrower.safeRethrow(e);
-				} finally {
-					// Clear the mock repository after each test
-					MockRepository.clear();
+		try {
+			classloaderExecutor.execute(new Runnable() {
+				public void run() {
+					try {
+						fNext.evaluate();
+					} catch (Throwable e) {
+						SafeExceptionRethrower.safeRethrow(e);
+					}
 				}
-			}
-		});
+			}, keptInstance);
+		} finally {
+			// Clear the mock repository after each test
+			MockRepository.endTestScope();
+		}
 	}
 }
@@ -15,6 +15,7 @@
  */
 package org.powermock.modules.testng;
 
+import org.powermock.core.MockRepository;
 import org.powermock.modules.agent.PowerMockAgent;
 import org.powermock.modules.agent.support.PowerMockAgentTestInitializer;
 import org.testng.IObjectFactory;
@@ -38,6 +39,10 @@ public class PowerMockObjectFactory implements IObjectFactory {
 
     public Object newInstance(Constructor constructor, Object... params) {
         final Class<?> testClass = constructor.getDeclaringClass();
+        /*
+		 * For extra safety clear the MockitoRepository.
+		 */
+        MockRepository.clear();
         PowerMockAgentTestInitializer.initialize(testClass);
         return defaultObjectFactory.newInstance(constructor, params);
     }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect;
+
+/**
+ * Reads and writes a field that has been looked up once, see
+ * {@link Whitebox#fieldAccessor(Class, String)}. The primitive versions of
+ * the methods read and write primitive fields without boxing the value.
+ * Accessors are thread-safe.
+ * <p>
+ * The <code>instance</code> argument of all methods is the instance whose
+ * field to read or write. It's ignored (and may be <code>null</code>) for
+ * static fields.
+ */
+public interface FieldAccessor {
+
+	<T> T get(Object instance);
+
+	void set(Object instance, Object value);
+
+	boolean getBoolean(Object instance);
+
+	void setBoolean(Object instance, boolean value);
+
+	byte getByte(Object instance);
+
+	void setByte(Object instance, byte value);
+
+	char getChar(Object instance);
+
+	void setChar(Object instance, char value);
+
+	short getShort(Object instance);
+
+	void setShort(Object instance, short value);
+
+	int getInt(Object instance);
+
+	void setInt(Object instance, int value);
+
+	long getLong(Object instance);
+
+	void setLong(Object instance, long value);
+
+	float getFloat(Object instance);
+
+	void setFloat(Object instance, float value);
+
+	double getDouble(Object instance);
+
+	void setDouble(Object instance, double value);
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect;
+
+/**
+ * Invokes a method that has been looked up once, see
+ * {@link Whitebox#methodInvoker(Class, String, Class...)}. Invokers are
+ * thread-safe.
+ */
+public interface MethodInvoker {
+
+	/**
+	 * Invoke the method.
+	 * 
+	 * @param instance
+	 *            The instance to invoke the method on, ignored (may be
+	 *            <code>null</code>) for static methods.
+	 * @param arguments
+	 *            The arguments of the invocation.
+	 * @return The value returned by the method.
+	 * @throws Exception
+	 *             Exception thrown by the method.
+	 */
+	<T> T invoke(Object instance, Object... arguments) throws Exception;
+}
@@ -367,6 +367,25 @@ public class Whitebox {
 		return WhiteboxImpl.<T> getInternalState(object, fieldType, where);
 	}
 
+	/**
+	 * Get a reusable accessor for a field in the class hierarchy of
+	 * <code>type</code>. The field is looked up once, so this is useful when
+	 * the same field is read or written many times, e.g. in a loop. The
+	 * accessor has primitive versions of its methods (e.g.
+	 * {@link FieldAccessor#getInt(Object)}) that don't box the value.
+	 * 
+	 * @param type
+	 *            The type of the class where the field is located.
+	 * @param fieldName
+	 *            The field name.
+	 * @return An accessor for the field.
+	 * @throws FieldNotFoundException
+	 *             If a field cannot be found in the hierarchy.
+	 */
+	public static FieldAccessor fieldAccessor(Class<?> type, String fieldName) {
+		return WhiteboxImpl.fieldAccessor(type, fieldName);
+	}
+
 	/**
 	 * Invoke a private or inner class method without the need to specify the
 	 * method name. This is thus a more refactor friendly version of the
@@ -376,7 +395,7 @@ public class Whitebox {
 	 * 
 	 * @throws Throwable
 	 */
-	public static synchronized <T> T invokeMethod(Object instance, Object... arguments) throws Exception {
+	public static <T> T invokeMethod(Object instance, Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(instance, arguments);
 	}
 
@@ -388,7 +407,7 @@ public class Whitebox {
 	 * private methods.
 	 * 
 	 */
-	public static synchronized <T> T invokeMethod(Class<?> klass, Object... arguments) throws Exception {
+	public static <T> T invokeMethod(Class<?> klass, Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(klass, arguments);
 	}
 
@@ -396,7 +415,7 @@ public class Whitebox {
 	 * Invoke a private or inner class method. This might be useful to test
 	 * private methods.
 	 */
-	public static synchronized <T> T invokeMethod(Object instance, String methodToExecute, Object... arguments)
+	public static <T> T invokeMethod(Object instance, String methodToExecute, Object... arguments)
 			throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(instance, methodToExecute, arguments);
 	}
@@ -410,7 +429,7 @@ public class Whitebox {
 	 * @throws Exception
 	 *             Exception that may occur when invoking this method.
 	 */
-	public static synchronized <T> T invokeMethod(Object instance, String methodToExecute, Class<?>[] argumentTypes,
+	public static <T> T invokeMethod(Object instance, String methodToExecute, Class<?>[] argumentTypes,
 			Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(instance, methodToExecute, argumentTypes, arguments);
 	}
@@ -425,7 +444,7 @@ public class Whitebox {
 	 * @throws Exception
 	 *             Exception that may occur when invoking this method.
 	 */
-	public static synchronized <T> T invokeMethod(Object instance, String methodToExecute, Class<?> definedIn,
+	public static <T> T invokeMethod(Object instance, String methodToExecute, Class<?> definedIn,
 			Class<?>[] argumentTypes, Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(instance, methodToExecute, definedIn, argumentTypes, arguments);
 	}
@@ -437,7 +456,7 @@ public class Whitebox {
 	 * @throws Exception
 	 *             Exception that may occur when invoking this method.
 	 */
-	public static synchronized <T> T invokeMethod(Object instance, Class<?> declaringClass, String methodToExecute,
+	public static <T> T invokeMethod(Object instance, Class<?> declaringClass, String methodToExecute,
 			Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(instance, declaringClass, methodToExecute, arguments);
 	}
@@ -451,7 +470,7 @@ public class Whitebox {
 	 * @throws Exception
 	 *             Exception that may occur when invoking this method.
 	 */
-	public static synchronized <T> T invokeMethod(Object object, Class<?> declaringClass, String methodToExecute,
+	public static <T> T invokeMethod(Object object, Class<?> declaringClass, String methodToExecute,
 			Class<?>[] parameterTypes, Object... arguments) throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(object, declaringClass, methodToExecute, parameterTypes, arguments);
 	}
@@ -461,11 +480,30 @@ public class Whitebox {
 	 * private methods.
 	 * 
 	 */
-	public static synchronized <T> T invokeMethod(Class<?> clazz, String methodToExecute, Object... arguments)
+	public static <T> T invokeMethod(Class<?> clazz, String methodToExecute, Object... arguments)
 			throws Exception {
 		return WhiteboxImpl.<T> invokeMethod(clazz, methodToExecute, arguments);
 	}
 
+	/**
+	 * Get a reusable invoker for a private or inner class method. The method
+	 * is looked up once, so this is useful when the same method is invoked
+	 * many times, e.g. in a parameterized test.
+	 * 
+	 * @param type
+	 *            The type of the class where the method is located.
+	 * @param methodName
+	 *            The method name.
+	 * @param parameterTypes
+	 *            All parameter types of the method (may be <code>null</code>).
+	 * @return An invoker for the method.
+	 * @throws MethodNotFoundException
+	 *             If the method cannot be found in the hierarchy.
+	 */
+	public static MethodInvoker methodInvoker(Class<?> type, String methodName, Class<?>... parameterTypes) {
+		return WhiteboxImpl.methodInvoker(type, methodName, parameterTypes);
+	}
+
 	/**
 	 * Invoke a constructor. Useful for testing classes with a private
 	 * constructor when PowerMock cannot determine which constructor to invoke.
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe cache of values computed for a class. Classes are weakly
+ * referenced so that caching a value for a class loaded by e.g. a mock class
+ * loader doesn't prevent the class loader from being garbage collected. The
+ * values are softly referenced since they typically refer to the class
+ * (through methods, constructors etc) which would otherwise make the class
+ * strongly reachable from the cache. Soft references are only cleared when
+ * the values haven't been used for a while or memory is running low, which
+ * is when the class may be collected as well.
+ * <p>
+ * Lookups don't lock since the cache is used for every member lookup made
+ * through the Whitebox. Entries of collected classes are removed when a new
+ * value is put in the cache.
+ *
+ * @param <V>
+ *            The type of the cached values.
+ */
+public class ClassCache<V> {
+
+    private final ConcurrentMap<Object, Reference<V>> values = new ConcurrentHashMap<Object, Reference<V>>();
+
+    private final ReferenceQueue<Class<?>> collectedClasses = new ReferenceQueue<Class<?>>();
+
+    /**
+     * @return The value cached for <code>type</code> or <code>null</code> if
+     *         not cached.
+     */
+    public V get(Class<?> type) {
+        final Reference<V> reference = values.get(new LookupKey(type));
+        return reference == null ? null : reference.get();
+    }
+
+    public void put(Class<?> type, V value) {
+        removeCollectedClasses();
+        values.put(new WeakKey(type, collectedClasses), new SoftReference<V>(value));
+    }
+
+    public void clear() {
+        values.clear();
+        removeCollectedClasses();
+    }
+
+    private void removeCollectedClasses() {
+        Reference<? extends Class<?>> collected;
+        while ((collected = collectedClasses.poll()) != null) {
+            values.remove(collected);
+        }
+    }
+
+    /*
+     * Both key types hash and compare the class by identity so that a weakly
+     * referenced class can be looked up without creating a weak reference.
+     */
+
+    private static class WeakKey extends WeakReference<Class<?>> {
+        private final int hashCode;
+
+        WeakKey(Class<?> type, ReferenceQueue<Class<?>> queue) {
+            super(type, queue);
+            hashCode = System.identityHashCode(type);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            final Class<?> type = get();
+            if (type == null) {
+                // Only equal to itself once the class has been collected
+                return false;
+            } else if (obj instanceof WeakKey) {
+                return type == ((WeakKey) obj).get();
+            } else if (obj instanceof LookupKey) {
+                return type == ((LookupKey) obj).type;
+            }
+            return false;
+        }
+    }
+
+    private static class LookupKey {
+        private final Class<?> type;
+
+        LookupKey(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(type);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WeakKey) {
+                return type == ((WeakKey) obj).get();
+            } else if (obj instanceof LookupKey) {
+                return type == ((LookupKey) obj).type;
+            }
+            return false;
+        }
+    }
+}
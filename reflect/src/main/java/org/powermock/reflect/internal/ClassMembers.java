@@ -0,0 +1,268 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect.internal;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The reflective members of a class, looked up and made accessible once and
+ * then shared by all calls to {@link WhiteboxImpl} for the class. Methods are
+ * indexed by name and by name and number of parameters. The results of
+ * method lookups by name and parameter types (e.g.
+ * {@link WhiteboxImpl#getBestMethodCandidate(Class, String, Class[], boolean)})
+ * are memoized as well.
+ * <p>
+ * The arrays held by an instance are never modified and must never be
+ * returned to code outside of {@link WhiteboxImpl} without being copied.
+ */
+class ClassMembers {
+
+    private static final Method[] NO_METHODS = new Method[0];
+
+    private final Class<?> type;
+
+    /**
+     * All methods declared in the class hierarchy, see
+     * {@link WhiteboxImpl#getAllMethods(Class)}.
+     */
+    private final Method[] allMethods;
+
+    /**
+     * The methods searched when looking up methods by name, i.e. the public
+     * methods of an interface and all methods of a class.
+     */
+    private final Method[] methods;
+
+    private final Map<String, Method[]> methodsByName;
+
+    private final Map<String, Method[]> methodsByNameAndParameterCount;
+
+    private final Field[] allFields;
+
+    private final Constructor<?>[] constructors;
+
+    private final ConcurrentMap<MethodLookup, Method> methodLookups = new ConcurrentHashMap<MethodLookup, Method>();
+
+    private final ConcurrentMap<String, Field> fieldsByName = new ConcurrentHashMap<String, Field>();
+
+    ClassMembers(Class<?> type) {
+        this.type = type;
+        allMethods = findAllMethods(type);
+        methods = type.isInterface() ? findPublicMethods(type) : allMethods;
+        methodsByName = indexByName(methods);
+        methodsByNameAndParameterCount = indexByNameAndParameterCount(methods);
+        allFields = findAllFields(type);
+        constructors = makeAccessible(type.getDeclaredConstructors());
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    Method[] getAllMethods() {
+        return allMethods;
+    }
+
+    Method[] getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return The methods named <code>name</code>, see {@link #getMethods()}.
+     */
+    Method[] getMethods(String name) {
+        final Method[] methods = methodsByName.get(name);
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    /**
+     * @return The methods named <code>name</code> with
+     *         <code>parameterCount</code> parameters, see
+     *         {@link #getMethods()}.
+     */
+    Method[] getMethods(String name, int parameterCount) {
+        final Method[] methods = methodsByNameAndParameterCount.get(nameAndParameterCount(name, parameterCount));
+        return methods == null ? NO_METHODS : methods;
+    }
+
+    Field[] getAllFields() {
+        return allFields;
+    }
+
+    Constructor<?>[] getConstructors() {
+        return constructors;
+    }
+
+    /**
+     * @return The method memoized for the lookup of <code>kind</code> or
+     *         <code>null</code> if none.
+     */
+    Method getMethodLookup(String kind, String name, Class<?>[] parameterTypes) {
+        return methodLookups.get(new MethodLookup(kind, name, parameterTypes));
+    }
+
+    void putMethodLookup(String kind, String name, Class<?>[] parameterTypes, Method method) {
+        methodLookups.put(new MethodLookup(kind, name, parameterTypes.clone()), method);
+    }
+
+    Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    void putField(String name, Field field) {
+        fieldsByName.put(name, field);
+    }
+
+    private static Method[] findAllMethods(Class<?> type) {
+        Set<Method> methods = new LinkedHashSet<Method>();
+        Class<?> thisType = type;
+        while (thisType != null) {
+            final Class<?> declaringType = thisType;
+            final Method[] declaredMethods = AccessController.doPrivileged(new PrivilegedAction<Method[]>() {
+
+                public Method[] run() {
+                    return declaringType.getDeclaredMethods();
+                }
+
+            });
+            for (Method method : declaredMethods) {
+                method.setAccessible(true);
+                methods.add(method);
+            }
+            thisType = thisType.getSuperclass();
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    private static Method[] findPublicMethods(Class<?> type) {
+        Set<Method> methods = new LinkedHashSet<Method>();
+        for (Method method : type.getMethods()) {
+            method.setAccessible(true);
+            methods.add(method);
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
+    private static Field[] findAllFields(Class<?> type) {
+        Set<Field> fields = new LinkedHashSet<Field>();
+        Class<?> thisType = type;
+        while (thisType != null) {
+            for (Field field : thisType.getDeclaredFields()) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+            thisType = thisType.getSuperclass();
+        }
+        return fields.toArray(new Field[fields.size()]);
+    }
+
+    private static <T extends AccessibleObject> T[] makeAccessible(T[] members) {
+        for (T member : members) {
+            if (!member.isAccessible()) {
+                member.setAccessible(true);
+            }
+        }
+        return members;
+    }
+
+    private static Map<String, Method[]> indexByName(Method[] methods) {
+        final Map<String, List<Method>> index = new HashMap<String, List<Method>>();
+        for (Method method : methods) {
+            add(index, method.getName(), method);
+        }
+        return toArrays(index);
+    }
+
+    private static Map<String, Method[]> indexByNameAndParameterCount(Method[] methods) {
+        final Map<String, List<Method>> index = new HashMap<String, List<Method>>();
+        for (Method method : methods) {
+            add(index, nameAndParameterCount(method.getName(), method.getParameterTypes().length), method);
+        }
+        return toArrays(index);
+    }
+
+    private static String nameAndParameterCount(String name, int parameterCount) {
+        return name + "/" + parameterCount;
+    }
+
+    private static void add(Map<String, List<Method>> index, String key, Method method) {
+        List<Method> methods = index.get(key);
+        if (methods == null) {
+            methods = new ArrayList<Method>(1);
+            index.put(key, methods);
+        }
+        methods.add(method);
+    }
+
+    private static Map<String, Method[]> toArrays(Map<String, List<Method>> index) {
+        final Map<String, Method[]> arrays = new HashMap<String, Method[]>(index.size() * 2);
+        for (Map.Entry<String, List<Method>> entry : index.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray(new Method[entry.getValue().size()]));
+        }
+        return Collections.unmodifiableMap(arrays);
+    }
+
+    /**
+     * Identifies a method lookup by name and parameter types. The kind tells
+     * lookups with different matching rules apart.
+     */
+    private static class MethodLookup {
+        private final String kind;
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private final int hashCode;
+
+        MethodLookup(String kind, String name, Class<?>[] parameterTypes) {
+            this.kind = kind;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+            this.hashCode = (kind.hashCode() * 31 + (name == null ? 0 : name.hashCode())) * 31
+                    + Arrays.hashCode(parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof MethodLookup)) {
+                return false;
+            }
+            final MethodLookup other = (MethodLookup) obj;
+            return kind.equals(other.kind) && (name == null ? other.name == null : name.equals(other.name))
+                    && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+    }
+}
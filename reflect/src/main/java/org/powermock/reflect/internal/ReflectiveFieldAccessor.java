@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect.internal;
+
+import org.powermock.reflect.FieldAccessor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * A {@link FieldAccessor} that reads and writes the field through the same
+ * accessible {@link Field} every time. The typed methods of {@link Field}
+ * (e.g. {@link Field#getInt(Object)}) are used for primitive fields so that
+ * the values are never boxed.
+ */
+class ReflectiveFieldAccessor implements FieldAccessor {
+
+    private final Field field;
+
+    private final boolean isStatic;
+
+    ReflectiveFieldAccessor(Field field) {
+        if (!field.isAccessible()) {
+            field.setAccessible(true);
+        }
+        this.field = field;
+        this.isStatic = Modifier.isStatic(field.getModifiers());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object instance) {
+        try {
+            return (T) field.get(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void set(Object instance, Object value) {
+        try {
+            field.set(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public boolean getBoolean(Object instance) {
+        try {
+            return field.getBoolean(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setBoolean(Object instance, boolean value) {
+        try {
+            field.setBoolean(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public byte getByte(Object instance) {
+        try {
+            return field.getByte(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setByte(Object instance, byte value) {
+        try {
+            field.setByte(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public char getChar(Object instance) {
+        try {
+            return field.getChar(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setChar(Object instance, char value) {
+        try {
+            field.setChar(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public short getShort(Object instance) {
+        try {
+            return field.getShort(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setShort(Object instance, short value) {
+        try {
+            field.setShort(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public int getInt(Object instance) {
+        try {
+            return field.getInt(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setInt(Object instance, int value) {
+        try {
+            field.setInt(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public long getLong(Object instance) {
+        try {
+            return field.getLong(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setLong(Object instance, long value) {
+        try {
+            field.setLong(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public float getFloat(Object instance) {
+        try {
+            return field.getFloat(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setFloat(Object instance, float value) {
+        try {
+            field.setFloat(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    public double getDouble(Object instance) {
+        try {
+            return field.getDouble(target(instance));
+        } catch (IllegalAccessException e) {
+            throw failedToGet(e);
+        }
+    }
+
+    public void setDouble(Object instance, double value) {
+        try {
+            field.setDouble(target(instance), value);
+        } catch (IllegalAccessException e) {
+            throw failedToSet(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Accessor of " + field;
+    }
+
+    private Object target(Object instance) {
+        if (isStatic) {
+            return null;
+        } else if (instance == null) {
+            throw new IllegalArgumentException("instance cannot be null when accessing " + field);
+        }
+        return instance;
+    }
+
+    private RuntimeException failedToGet(IllegalAccessException e) {
+        return new RuntimeException("Internal error: Failed to get field " + field + ".", e);
+    }
+
+    private RuntimeException failedToSet(IllegalAccessException e) {
+        return new RuntimeException("Internal error: Failed to set field " + field + ".", e);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.powermock.reflect.internal;
+
+import org.powermock.reflect.MethodInvoker;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A {@link MethodInvoker} that invokes the method through the same
+ * {@link Method} object every time. The method is only looked up and made
+ * accessible once, and since the JVM generates a byte-code accessor for a
+ * {@link Method} object that is invoked repeatedly, reflection overhead goes
+ * away after the first few invocations.
+ */
+class ReflectiveMethodInvoker implements MethodInvoker {
+
+    private final Method method;
+
+    private final boolean isStatic;
+
+    ReflectiveMethodInvoker(Method method) {
+        if (!method.isAccessible()) {
+            method.setAccessible(true);
+        }
+        this.method = method;
+        this.isStatic = Modifier.isStatic(method.getModifiers());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T invoke(Object instance, Object... arguments) throws Exception {
+        if (!isStatic && instance == null) {
+            throw new IllegalArgumentException("instance cannot be null when invoking " + method);
+        }
+        return (T) WhiteboxImpl.performMethodInvocation(isStatic ? null : instance, method, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "Invoker of " + method;
+    }
+}
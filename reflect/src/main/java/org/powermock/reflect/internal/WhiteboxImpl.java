@@ -18,6 +18,8 @@ package org.powermock.reflect.internal;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 import org.objenesis.instantiator.ObjectInstantiator;
+import org.powermock.reflect.FieldAccessor;
+import org.powermock.reflect.MethodInvoker;
 import org.powermock.reflect.exceptions.*;
 import org.powermock.reflect.internal.matcherstrategies.*;
 import org.powermock.reflect.internal.primitivesupport.PrimitiveWrapper;
@@ -26,8 +28,6 @@ import org.powermock.reflect.spi.ProxyFramework;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.util.*;
 
 /**
@@ -39,6 +39,27 @@ public class WhiteboxImpl {
     /** The proxy framework. */
     private static ProxyFramework proxyFramework = null;
 
+    /*
+     * Objenesis' own cache is disabled since it's keyed by class name, which
+     * isn't unique when the same class is loaded by several (mock) class
+     * loaders, and would keep the classes from being garbage collected.
+     */
+    private static final Objenesis objenesis = new ObjenesisStd(false);
+
+    /** The instantiators used by {@link #newInstance(Class)}. */
+    private static final ClassCache<ObjectInstantiator> instantiators = new ClassCache<ObjectInstantiator>();
+
+    /** The members of the classes that have been inspected. */
+    private static final ClassCache<ClassMembers> members = new ClassCache<ClassMembers>();
+
+    /*
+     * The kinds of method lookups memoized in ClassMembers.
+     */
+    private static final String GET_METHOD = "getMethod";
+    private static final String GET_METHOD_BY_PARAMETER_TYPES = "getMethodByParameterTypes";
+    private static final String BEST_METHOD_CANDIDATE = "bestMethodCandidate";
+    private static final String BEST_METHOD_CANDIDATE_EXACT = "bestMethodCandidateExact";
+
     /**
      * Convenience method to get a method from a class type without having to
      * catch the checked exceptions otherwise required. These exceptions are
@@ -62,6 +83,11 @@ public class WhiteboxImpl {
         if (parameterTypes == null) {
             parameterTypes = new Class<?>[0];
         }
+        final ClassMembers members = getMembers(type);
+        final Method memoized = members.getMethodLookup(GET_METHOD_BY_PARAMETER_TYPES, null, parameterTypes);
+        if (memoized != null) {
+            return memoized;
+        }
 
         List<Method> foundMethods = new LinkedList<Method>();
         while (thisType != null) {
@@ -69,7 +95,7 @@ public class WhiteboxImpl {
             if (thisType.isInterface()) {
                 // Interfaces only contain public (and abstract) methods, no
                 // need to traverse the hierarchy.
-                methodsToTraverse = getAllPublicMethods(thisType);
+                methodsToTraverse = getMembers(thisType).getMethods();
             } else {
                 methodsToTraverse = thisType.getDeclaredMethods();
             }
@@ -83,6 +109,7 @@ public class WhiteboxImpl {
 
             }
             if (foundMethods.size() == 1) {
+                members.putMethodLookup(GET_METHOD_BY_PARAMETER_TYPES, null, parameterTypes, foundMethods.get(0));
                 return foundMethods.get(0);
             } else if (foundMethods.size() > 1) {
                 break;
@@ -126,12 +153,17 @@ public class WhiteboxImpl {
         if (parameterTypes == null) {
             parameterTypes = new Class<?>[0];
         }
+        final ClassMembers members = getMembers(type);
+        final Method memoized = members.getMethodLookup(GET_METHOD, methodName, parameterTypes);
+        if (memoized != null) {
+            return memoized;
+        }
         while (thisType != null) {
             Method[] methodsToTraverse = null;
             if (thisType.isInterface()) {
                 // Interfaces only contain public (and abstract) methods, no
                 // need to traverse the hierarchy.
-                methodsToTraverse = getAllPublicMethods(thisType);
+                methodsToTraverse = getMembers(thisType).getMethods();
             } else {
                 methodsToTraverse = thisType.getDeclaredMethods();
             }
@@ -139,6 +171,7 @@ public class WhiteboxImpl {
                 if (methodName.equals(method.getName())
                         && checkIfParameterTypesAreSame(method.isVarArgs(), parameterTypes, method.getParameterTypes())) {
                     method.setAccessible(true);
+                    members.putMethodLookup(GET_METHOD, methodName, parameterTypes, method);
                     return method;
                 }
             }
@@ -165,6 +198,11 @@ public class WhiteboxImpl {
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public static Field getField(Class<?> type, String fieldName) {
+        final ClassMembers members = getMembers(type);
+        final Field memoized = members.getField(fieldName);
+        if (memoized != null) {
+            return memoized;
+        }
         LinkedList<Class<?>> examine = new LinkedList<Class<?>>();
         examine.add(type);
         Set<Class<?>> done = new HashSet<Class<?>>();
@@ -175,6 +213,7 @@ public class WhiteboxImpl {
             for (Field field : declaredField) {
                 if (fieldName.equals(field.getName())) {
                     field.setAccessible(true);
+                    members.putField(fieldName, field);
                     return field;
                 }
             }
@@ -224,13 +263,20 @@ public class WhiteboxImpl {
             throw new IllegalArgumentException(
                     "Cannot instantiate an abstract class. Please use the ConcreteClassGenerator in PowerMock support to generate a concrete class first.");
         } else {
-            Objenesis objenesis = new ObjenesisStd();
-            ObjectInstantiator thingyInstantiator = objenesis.getInstantiatorOf(classToInstantiate);
-            object = thingyInstantiator.newInstance();
+            object = getInstantiator(classToInstantiate).newInstance();
         }
         return (T) object;
     }
 
+    private static ObjectInstantiator getInstantiator(Class<?> classToInstantiate) {
+        ObjectInstantiator instantiator = instantiators.get(classToInstantiate);
+        if (instantiator == null) {
+            instantiator = objenesis.getInstantiatorOf(classToInstantiate);
+            instantiators.put(classToInstantiate, instantiator);
+        }
+        return instantiator;
+    }
+
     /**
      * Convenience method to get a (declared) constructor from a class type
      * without having to catch the checked exceptions otherwise required. These
@@ -665,7 +711,7 @@ public class WhiteboxImpl {
      *             might be useful to test private methods.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object tested, Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Object tested, Object... arguments) throws Exception {
         return (T) doInvokeMethod(tested, null, null, arguments);
     }
 
@@ -687,7 +733,7 @@ public class WhiteboxImpl {
      *             might be useful to test private methods.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Class<?> tested, Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Class<?> tested, Object... arguments) throws Exception {
         return (T) doInvokeMethod(tested, null, null, arguments);
     }
 
@@ -708,7 +754,7 @@ public class WhiteboxImpl {
      *             the exception
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object tested, String methodToExecute, Object... arguments)
+    public static <T> T invokeMethod(Object tested, String methodToExecute, Object... arguments)
             throws Exception {
         return (T) doInvokeMethod(tested, null, methodToExecute, arguments);
     }
@@ -734,8 +780,8 @@ public class WhiteboxImpl {
      *             Exception that may occur when invoking this method.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object tested, String methodToExecute, Class<?>[] argumentTypes,
-                                                  Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Object tested, String methodToExecute, Class<?>[] argumentTypes,
+                                     Object... arguments) throws Exception {
         final Class<?> unmockedType = getType(tested);
         Method method = getMethod(unmockedType, methodToExecute, argumentTypes);
         if (method == null) {
@@ -768,8 +814,8 @@ public class WhiteboxImpl {
      *             {@link #invokeMethod(Class, String, Object...)} instead.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object tested, String methodToExecute, Class<?> definedIn,
-                                                  Class<?>[] argumentTypes, Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Object tested, String methodToExecute, Class<?> definedIn,
+                                     Class<?>[] argumentTypes, Object... arguments) throws Exception {
         Method method = getMethod(definedIn, methodToExecute, argumentTypes);
         if (method == null) {
             throwExceptionIfMethodWasNotFound(definedIn, methodToExecute, null, arguments);
@@ -796,8 +842,8 @@ public class WhiteboxImpl {
      *             Exception that may occur when invoking this method.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object tested, Class<?> declaringClass, String methodToExecute,
-                                                  Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Object tested, Class<?> declaringClass, String methodToExecute,
+                                     Object... arguments) throws Exception {
         return (T) doInvokeMethod(tested, declaringClass, methodToExecute, arguments);
     }
 
@@ -826,8 +872,8 @@ public class WhiteboxImpl {
      *             {@link #invokeMethod(Object, String, Object...)} instead.
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Object object, Class<?> declaringClass, String methodToExecute,
-                                                  Class<?>[] parameterTypes, Object... arguments) throws Exception {
+    public static <T> T invokeMethod(Object object, Class<?> declaringClass, String methodToExecute,
+                                     Class<?>[] parameterTypes, Object... arguments) throws Exception {
         if (object == null) {
             throw new IllegalArgumentException("object cannot be null");
         }
@@ -854,11 +900,43 @@ public class WhiteboxImpl {
      *             the exception
      */
     @SuppressWarnings("unchecked")
-    public static synchronized <T> T invokeMethod(Class<?> clazz, String methodToExecute, Object... arguments)
+    public static <T> T invokeMethod(Class<?> clazz, String methodToExecute, Object... arguments)
             throws Exception {
         return (T) doInvokeMethod(clazz, null, methodToExecute, arguments);
     }
 
+    /**
+     * Get an invoker for the method named <code>methodName</code> with the
+     * supplied parameter types in the class hierarchy of <code>type</code>.
+     * The method is looked up once when the invoker is created.
+     *
+     * @param type
+     *            The type of the class where the method is located.
+     * @param methodName
+     *            The method name.
+     * @param parameterTypes
+     *            All parameter types of the method (may be <code>null</code>).
+     * @return An invoker for the method.
+     */
+    public static MethodInvoker methodInvoker(Class<?> type, String methodName, Class<?>... parameterTypes) {
+        return new ReflectiveMethodInvoker(getMethod(type, methodName, parameterTypes));
+    }
+
+    /**
+     * Get an accessor for the field named <code>fieldName</code> in the
+     * class hierarchy of <code>type</code>. The field is looked up once when
+     * the accessor is created.
+     *
+     * @param type
+     *            The type of the class where the field is located.
+     * @param fieldName
+     *            The field name.
+     * @return An accessor for the field.
+     */
+    public static FieldAccessor fieldAccessor(Class<?> type, String fieldName) {
+        return new ReflectiveFieldAccessor(getField(type, fieldName));
+    }
+
     /**
      * Do invoke method.
      *
@@ -1021,6 +1099,12 @@ public class WhiteboxImpl {
      */
     public static Method getBestMethodCandidate(Class<?> cls, String methodName, Class<?>[] signature,
                                                 boolean exactParameterTypeMatch) {
+        final String lookup = exactParameterTypeMatch ? BEST_METHOD_CANDIDATE_EXACT : BEST_METHOD_CANDIDATE;
+        final ClassMembers members = getMembers(cls);
+        final Method memoized = members.getMethodLookup(lookup, methodName, signature);
+        if (memoized != null) {
+            return memoized;
+        }
         final Method foundMethod;
         final Method[] methods = getMethods(cls, methodName, signature, exactParameterTypeMatch);
         if (methods.length == 1) {
@@ -1057,6 +1141,7 @@ public class WhiteboxImpl {
             });
             foundMethod = methods[0];
         }
+        members.putMethodLookup(lookup, methodName, signature, foundMethod);
         return foundMethod;
     }
 
@@ -1575,13 +1660,7 @@ public class WhiteboxImpl {
      * @return All constructors declared in this class hierarchy.
      */
     public static Constructor<?>[] getAllConstructors(Class<?> clazz) {
-        Constructor<?>[] declaredConstructors = clazz.getDeclaredConstructors();
-        for (Constructor<?> constructor : declaredConstructors) {
-            if (!constructor.isAccessible()) {
-                constructor.setAccessible(true);
-            }
-        }
-        return declaredConstructors;
+        return getMembers(clazz).getConstructors().clone();
     }
 
     /**
@@ -1596,47 +1675,7 @@ public class WhiteboxImpl {
         if (clazz == null) {
             throw new IllegalArgumentException("You must specify a class in order to get the methods.");
         }
-        Set<Method> methods = new LinkedHashSet<Method>();
-
-        Class<?> thisType = clazz;
-
-        while (thisType != null) {
-            final Class<?> type = thisType;
-            final Method[] declaredMethods = AccessController.doPrivileged(new PrivilegedAction<Method[]>() {
-
-                public Method[] run() {
-                    return type.getDeclaredMethods();
-                }
-
-            });
-            for (Method method : declaredMethods) {
-                method.setAccessible(true);
-                methods.add(method);
-            }
-            thisType = thisType.getSuperclass();
-        }
-        return methods.toArray(new Method[0]);
-    }
-
-    /**
-     * Get all public methods for a class (no duplicates)! Note that the
-     * class-hierarchy will not be traversed.
-     *
-     * @param clazz
-     *            The class whose methods to get.
-     * @return All public methods declared in class.
-     */
-    private static Method[] getAllPublicMethods(Class<?> clazz) {
-        if (clazz == null) {
-            throw new IllegalArgumentException("You must specify a class in order to get the methods.");
-        }
-        Set<Method> methods = new LinkedHashSet<Method>();
-
-        for (Method method : clazz.getMethods()) {
-            method.setAccessible(true);
-            methods.add(method);
-        }
-        return methods.toArray(new Method[0]);
+        return getMembers(clazz).getAllMethods().clone();
     }
 
     /**
@@ -1651,19 +1690,20 @@ public class WhiteboxImpl {
         if (clazz == null) {
             throw new IllegalArgumentException("You must specify the class that contains the fields");
         }
-        Set<Field> fields = new LinkedHashSet<Field>();
-
-        Class<?> thisType = clazz;
+        return getMembers(clazz).getAllFields().clone();
+    }
 
-        while (thisType != null) {
-            final Field[] declaredFields = thisType.getDeclaredFields();
-            for (Field field : declaredFields) {
-                field.setAccessible(true);
-                fields.add(field);
-            }
-            thisType = thisType.getSuperclass();
+    /**
+     * @return The cached members of <code>type</code>, looked up and made
+     *         accessible the first time they're needed.
+     */
+    private static ClassMembers getMembers(Class<?> type) {
+        ClassMembers classMembers = members.get(type);
+        if (classMembers == null) {
+            classMembers = new ClassMembers(type);
+            members.put(type, classMembers);
         }
-        return fields.toArray(new Field[fields.size()]);
+        return classMembers;
     }
 
     /**
@@ -1880,24 +1920,21 @@ public class WhiteboxImpl {
         if (methodNames == null || methodNames.length == 0) {
             throw new IllegalArgumentException("You must supply at least one method name.");
         }
-        final List<Method> methodsToMock = new LinkedList<Method>();
-        Method[] allMethods = null;
-        if (clazz.isInterface()) {
-            allMethods = getAllPublicMethods(clazz);
+        final ClassMembers classMembers = getMembers(clazz);
+        final Method[] methodArray;
+        if (methodNames.length == 1) {
+            methodArray = classMembers.getMethods(methodNames[0]).clone();
         } else {
-            allMethods = getAllMethods(clazz);
-        }
-
-        for (Method method : allMethods) {
-            for (String methodName : methodNames) {
-                if (method.getName().equals(methodName)) {
-                    method.setAccessible(true);
-                    methodsToMock.add(method);
+            final List<Method> methodsToMock = new LinkedList<Method>();
+            for (Method method : classMembers.getMethods()) {
+                for (String methodName : methodNames) {
+                    if (method.getName().equals(methodName)) {
+                        methodsToMock.add(method);
+                    }
                 }
             }
+            methodArray = methodsToMock.toArray(new Method[0]);
         }
-
-        final Method[] methodArray = methodsToMock.toArray(new Method[0]);
         if (methodArray.length == 0) {
             throw new MethodNotFoundException(String.format(
                     "No methods matching the name(s) %s were found in the class hierarchy of %s.",
@@ -1928,7 +1965,10 @@ public class WhiteboxImpl {
     public static Method[] getMethods(Class<?> clazz, String methodName, Class<?>[] expectedTypes,
                                       boolean exactParameterTypeMatch) {
         List<Method> matchingArgumentTypes = new LinkedList<Method>();
-        Method[] methods = getMethods(clazz, methodName);
+        final ClassMembers classMembers = getMembers(clazz);
+        // Parameter types only match methods with the same number of parameters
+        Method[] methods = expectedTypes == null ? classMembers.getMethods(methodName) : classMembers.getMethods(
+                methodName, expectedTypes.length);
         for (Method method : methods) {
             final Class<?>[] parameterTypes = method.getParameterTypes();
             if (checkIfParameterTypesAreSame(method.isVarArgs(), expectedTypes, parameterTypes)
@@ -1994,8 +2034,11 @@ public class WhiteboxImpl {
     @SuppressWarnings("unchecked")
     public static <T> T performMethodInvocation(Object tested, Method methodToInvoke, Object... arguments)
             throws Exception {
-        final boolean accessible = methodToInvoke.isAccessible();
-        if (!accessible) {
+        /*
+         * The method is left accessible after the invocation. Resetting it
+         * would make a concurrent invocation of the same (cached) method fail.
+         */
+        if (!methodToInvoke.isAccessible()) {
             methodToInvoke.setAccessible(true);
         }
         try {
@@ -2022,10 +2065,6 @@ public class WhiteboxImpl {
             } else {
                 throw new MethodInvocationException(cause);
             }
-        } finally {
-            if (!accessible) {
-                methodToInvoke.setAccessible(false);
-            }
         }
     }
 
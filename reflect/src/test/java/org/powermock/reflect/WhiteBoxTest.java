@@ -308,6 +308,53 @@ public class WhiteBoxTest {
 		assertEquals(1, Whitebox.invokeMethod(tested, "varArgsMethod", new Class<?>[] { int[].class }, 1));
 	}
 
+	@Test
+	public void methodInvokerInvokesPrivateMethodRepeatedly() throws Exception {
+		MethodInvoker invoker = Whitebox.methodInvoker(ClassWithPrivateMethods.class, "varArgsMethod", int[].class);
+		assertEquals(6, invoker.invoke(new ClassWithPrivateMethods(), 1, 2, 3));
+		assertEquals(2, invoker.invoke(new ClassWithPrivateMethods(), 2));
+	}
+
+	@Test
+	public void methodInvokerInvokesPrivateStaticMethod() throws Exception {
+		MethodInvoker invoker = Whitebox.methodInvoker(ClassWithStaticMethod.class, "aStaticMethod", byte[].class);
+		assertEquals("hello", invoker.invoke(null, new byte[0]));
+	}
+
+	@Test
+	public void fieldAccessorReadsAndWritesPrimitiveFieldsOfDifferentInstances() throws Exception {
+		FieldAccessor intAccessor = Whitebox.fieldAccessor(ClassWithInternalState.class, "internalState");
+		FieldAccessor longAccessor = Whitebox.fieldAccessor(ClassWithInternalState.class, "internalLongState");
+		ClassWithInternalState first = new ClassWithInternalState();
+		ClassWithInternalState second = new ClassWithInternalState();
+
+		intAccessor.setInt(first, 1);
+		intAccessor.setInt(second, 2);
+		longAccessor.setLong(second, 42L);
+
+		assertEquals(1, intAccessor.getInt(first));
+		assertEquals(2, intAccessor.getInt(second));
+		assertEquals(Long.valueOf(42L), longAccessor.<Long> get(second));
+		assertEquals(Long.valueOf(17L), Long.valueOf(first.getInternalLongState()));
+	}
+
+	@Test
+	public void fieldAccessorIgnoresInstanceForStaticFields() throws Exception {
+		FieldAccessor accessor = Whitebox.fieldAccessor(ClassWithInternalState.class, "staticState");
+		int originalState = accessor.getInt(null);
+		try {
+			accessor.setInt(new ClassWithInternalState(), 7);
+			assertEquals(7, ClassWithInternalState.getStaticState());
+		} finally {
+			accessor.setInt(null, originalState);
+		}
+	}
+
+	@Test(expected = FieldNotFoundException.class)
+	public void fieldAccessorThrowsFieldNotFoundExceptionWhenFieldDoesntExist() throws Exception {
+		Whitebox.fieldAccessor(ClassWithInternalState.class, "nonExistingField");
+	}
+
 	@Test
 	public void testInvokePrivateMethodWithASubTypeOfTheArgumentType() throws Exception {
 		ClassWithPrivateMethods tested = new ClassWithPrivateMethods();
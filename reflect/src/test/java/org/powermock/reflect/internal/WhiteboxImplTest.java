@@ -66,4 +66,45 @@ public class WhiteboxImplTest {
 				new Class<?>[] { double.class, Child.class }, false);
 		assertEquals(expectedMethod, actualMethod);
 	}
+
+	@Test
+	public void getAllMethodsReturnsACopyOfTheCachedMethods() throws Exception {
+		final Method[] methods = WhiteboxImpl.getAllMethods(ClassWithOverloadedMethods.class);
+		final int numberOfMethods = methods.length;
+		methods[0] = null;
+
+		final Method[] methodsAgain = WhiteboxImpl.getAllMethods(ClassWithOverloadedMethods.class);
+		assertEquals(numberOfMethods, methodsAgain.length);
+		assertNotNull(methodsAgain[0]);
+	}
+
+	@Test
+	public void getBestCandidateMethodReturnsTheSameMethodWhenInvokedAgain() throws Exception {
+		final Method expectedMethod = ClassWithOverloadedMethods.class.getDeclaredMethod("overloaded", double.class,
+				Child.class);
+		final Class<?>[] signature = new Class<?>[] { double.class, Child.class };
+		final Method first = WhiteboxImpl.getBestMethodCandidate(ClassWithOverloadedMethods.class, "overloaded",
+				signature, false);
+		signature[1] = Object.class;
+		final Method second = WhiteboxImpl.getBestMethodCandidate(ClassWithOverloadedMethods.class, "overloaded",
+				new Class<?>[] { double.class, Child.class }, false);
+
+		assertEquals(expectedMethod, first);
+		assertSame(first, second);
+	}
+
+	@Test
+	public void newInstanceCreatesNewInstancesWithoutInvokingTheConstructor() throws Exception {
+		final ClassWithThrowingConstructor first = WhiteboxImpl.newInstance(ClassWithThrowingConstructor.class);
+		final ClassWithThrowingConstructor second = WhiteboxImpl.newInstance(ClassWithThrowingConstructor.class);
+
+		assertNotNull(first);
+		assertNotSame(first, second);
+	}
+
+	private static class ClassWithThrowingConstructor {
+		ClassWithThrowingConstructor() {
+			throw new IllegalStateException("Constructor should not be invoked");
+		}
+	}
 }